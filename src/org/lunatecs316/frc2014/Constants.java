@@ -1,17 +1,15 @@
 package org.lunatecs316.frc2014;
 
-import com.sun.squawk.io.BufferedReader;
 import com.sun.squawk.microedition.io.FileConnection;
+import edu.wpi.first.wpilibj.networktables.NetworkTable;
+import edu.wpi.first.wpilibj.tables.ITable;
+import edu.wpi.first.wpilibj.tables.ITableListener;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.util.Enumeration;
+import java.io.InputStream;
 import java.util.Hashtable;
 import java.util.Vector;
 import javax.microedition.io.Connector;
 import org.lunatecs316.frc2014.lib.Logger;
-import org.lunatecs316.frc2014.subsystems.Drivetrain;
-import org.lunatecs316.frc2014.subsystems.Pickup;
-import org.lunatecs316.frc2014.subsystems.Shooter;
 
 /**
  * Robot Constants manager. All constants have a String key and double value
@@ -19,8 +17,31 @@ import org.lunatecs316.frc2014.subsystems.Shooter;
  */
 public final class Constants {
     private static final String kFilename = "Constants.txt";
-    // This MUST come before the creation of any constants!
+    private static final String kTableName = "Constants";
+    private static final int kMaxConstants = 64;
+    // These MUST come before the creation of any constants!
     private static Hashtable constants = new Hashtable();
+    private static Constant[] all = new Constant[kMaxConstants];
+    private static int count;
+    private static Vector listeners = new Vector();
+
+    // Live tuning. Edits from NetworkTables are staged here and applied at
+    // the start of the next loop.
+    private static ITable table;
+    private static Object stageLock = new Object();
+    private static double[] stagedValues = new double[kMaxConstants];
+    private static boolean[] staged = new boolean[kMaxConstants];
+    private static volatile int stagedVersion;
+    private static int appliedVersion;
+    private static double[] applyValues = new double[kMaxConstants];
+    private static boolean[] applying = new boolean[kMaxConstants];
+
+    // Parser state, allocated once
+    private static byte[] readBuffer = new byte[256];
+    private static char[] keyBuffer = new char[64];
+    private static char[] valueBuffer = new char[32];
+    private static long lastSize = -1;
+    private static long lastModified = -1;
 
     public static final Constant DashboardUpdateFrequency = new Constant("DashboardUpdateFrequency", 10.0);
     public static final Constant JoystickDeadband = new Constant("JoystickDeadband", 0.2);
@@ -33,25 +54,51 @@ public final class Constants {
     public static final Constant DrivetrainDistancePHigh = new Constant("DrivetrainDistancePHigh", 1.0);
     public static final Constant DrivetrainDistanceIHigh = new Constant("DrivetrainDistanceIHigh", 0.0);
     public static final Constant DrivetrainDistanceDHigh = new Constant("DrivetrainDistanceDHigh", 0.0);
+    public static final Constant DrivetrainProfiledDistance = new Constant("DrivetrainProfiledDistance", 0.0);
+    public static final Constant DrivetrainProfileP = new Constant("DrivetrainProfileP", 0.0003);
+    public static final Constant DrivetrainProfileI = new Constant("DrivetrainProfileI", 0.0);
+    public static final Constant DrivetrainProfileD = new Constant("DrivetrainProfileD", 0.0);
+    public static final Constant DrivetrainVelocityFF = new Constant("DrivetrainVelocityFF", 0.00003);
+    public static final Constant DrivetrainVelocityP = new Constant("DrivetrainVelocityP", 0.00001);
+    public static final Constant DrivetrainMaxVelocity = new Constant("DrivetrainMaxVelocity", 20000);
+    public static final Constant DrivetrainMaxAcceleration = new Constant("DrivetrainMaxAcceleration", 25000);
+    public static final Constant DrivetrainDistanceTolerance = new Constant("DrivetrainDistanceTolerance", 200);
+    public static final Constant DrivetrainSettleVelocity = new Constant("DrivetrainSettleVelocity", 500);
+    public static final Constant DrivetrainSettleTime = new Constant("DrivetrainSettleTime", 100);
     public static final Constant DrivetrainAngleP = new Constant("DrivetrainAngleP", -0.1);
     public static final Constant DrivetrainAngleI = new Constant("DrivetrainAngleI", 0.0);
     public static final Constant DrivetrainAngleD = new Constant("DrivetrainAngleD", 0.0);
     public static final Constant DrivetrainSetpoint = new Constant("DrivetrainSetpoint", 0.0);
     public static final Constant Drivetrain8ft = new Constant("Drivetrain8ft", 28000);
-    public static final Constant Drivetrain4ft = new Constant("Drivetrain8ft", 14000);
+    public static final Constant Drivetrain4ft = new Constant("Drivetrain4ft", 14000);
+    public static final Constant DrivetrainCountsPerInch = new Constant("DrivetrainCountsPerInch", 28000 / 96.0);
+    public static final Constant DrivetrainTrackWidth = new Constant("DrivetrainTrackWidth", 24.0);
+    public static final Constant HeadingGyroWeight = new Constant("HeadingGyroWeight", 1.0);
+    public static final Constant HeadingMaxTurnRate = new Constant("HeadingMaxTurnRate", 10.0);
+    public static final Constant HeadingMaxSpeed = new Constant("HeadingMaxSpeed", 2.0);
+    public static final Constant GyroStationaryRate = new Constant("GyroStationaryRate", 50);
+    public static final Constant GyroStationaryTime = new Constant("GyroStationaryTime", 500);
+    public static final Constant PathLookahead = new Constant("PathLookahead", 24.0);
+    public static final Constant PathSpeed = new Constant("PathSpeed", 0.6);
+    public static final Constant PathMinSpeed = new Constant("PathMinSpeed", 0.2);
+    public static final Constant PathSlowdownDistance = new Constant("PathSlowdownDistance", 36.0);
+    public static final Constant PathTolerance = new Constant("PathTolerance", 3.0);
     public static final Constant WheelNonLinearity = new Constant("WheelNonLinearity", 0.5);
 
     public static final Constant ShooterResetTime = new Constant("ShooterResetTime", 500);
     public static final Constant ShooterBump = new Constant("ShooterBump", 3);
     public static final Constant ShooterPositionP = new Constant("ShooterPositionP", 8.0);
-    public static final Constant ShooterPositionI = new Constant("ShooterPositionI", 7.0);
+    public static final Constant ShooterPositionI = new Constant("ShooterPositionI", 0.0);
     public static final Constant ShooterPositionD = new Constant("ShooterPositionD", 0.0);
     public static final Constant ShooterPositionTolerance = new Constant("ShooterPositionTolerance", 0.05);
+    public static final Constant ShooterMaxVelocity = new Constant("ShooterMaxVelocity", 2.0);
+    public static final Constant ShooterMaxAcceleration = new Constant("ShooterMaxAcceleration", 8.0);
     public static final Constant ShooterTopPosition = new Constant("ShooterTopPosition", 0.845);
     public static final Constant ShooterBottomPosition = new Constant("ShooterBottomPosition", 1.867);
     public static final Constant ShooterLoadPosition = new Constant("ShooterLoadPosition", 1.75);
     public static final Constant ShooterAngleOffset = new Constant("ShooterAngleOffset", 0.0);
     public static final Constant ShooterDistanceOffset = new Constant("ShooterDistanceOffset", 0.0);
+    public static final Constant ShooterCalibrationMode = new Constant("ShooterCalibrationMode", 0.0);
     public static final Constant AutonomousShooterSetpoint = new Constant("AutonomousShooterSetpoint", 1.53);
     public static final Constant StaticShooterSetpoint = new Constant("StaticShooterSetpoint", 1.53);
     public static final Constant TrussShotSetpoint = new Constant("TrussShotSetpoint", 1.8);
@@ -63,15 +110,29 @@ public final class Constants {
     public static final class Constant {
         private String name;
         private double value;
+        private int version;
+        private boolean changed;
+        private int index;
 
         public Constant(String name, double val) {
             this.name = name;
             value = val;
             Constants.constants.put(name, this);
+            if (count < kMaxConstants) {
+                index = count++;
+                all[index] = this;
+            } else {
+                index = -1;
+                Logger.error("Constants.Constant", "Too many constants, '" + name + "' can't be tuned");
+            }
         }
 
         public void setValue(double val) {
-            value = val;
+            if (val != value) {
+                value = val;
+                version++;
+                changed = true;
+            }
         }
 
         public double getValue() {
@@ -81,35 +142,173 @@ public final class Constants {
         public String getName() {
             return name;
         }
+
+        /**
+         * Get the number of times the value has changed
+         * @return the version of the value
+         */
+        public int getVersion() {
+            return version;
+        }
+
+        /**
+         * Check if the value changed in the current update. Only meaningful
+         * inside {@link Listener#updateConstants()}.
+         * @return if the value was changed
+         */
+        public boolean hasChanged() {
+            return changed;
+        }
+    }
+
+    /**
+     * Interface for objects that need to know when constants change
+     */
+    public interface Listener {
+        /**
+         * Called after an update that changed at least one of the
+         * constants the listener registered for
+         */
+        public void updateConstants();
+    }
+
+    /**
+     * A listener and the constants it depends on
+     */
+    private static final class Registration {
+        private Listener listener;
+        private Constant[] constants;
+
+        private Registration(Listener listener, Constant[] constants) {
+            this.listener = listener;
+            this.constants = constants;
+        }
+
+        private boolean isAffected() {
+            for (int i = 0; i < constants.length; i++) {
+                if (constants[i].changed)
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Register to be notified when any of the given constants change
+     * @param listener the object to notify
+     * @param dependencies the constants the listener uses
+     */
+    public static void addListener(Listener listener, Constant[] dependencies) {
+        listeners.addElement(new Registration(listener, dependencies));
+    }
+
+    /**
+     * Start mirroring every constant to NetworkTables so values can be
+     * tuned from the dashboard while the robot is running. Edits are staged
+     * and only take effect in {@link #applyPending()}.
+     */
+    public static void startLiveTuning() {
+        table = NetworkTable.getTable("SmartDashboard").getSubTable(kTableName);
+        publish();
+        table.addTableListener(new ITableListener() {
+            public void valueChanged(ITable source, String key, Object value, boolean isNew) {
+                stage(key, value);
+            }
+        });
+    }
+
+    /**
+     * Stage an edit received from NetworkTables. Called from the
+     * NetworkTables thread.
+     */
+    private static void stage(String key, Object value) {
+        Constant c = (Constant) constants.get(key);
+        if (c == null || c.index < 0 || !(value instanceof Double))
+            return;
+
+        double v = ((Double) value).doubleValue();
+        synchronized (stageLock) {
+            stagedValues[c.index] = v;
+            staged[c.index] = true;
+            stagedVersion++;
+        }
+    }
+
+    /**
+     * Apply any edits staged from NetworkTables. Call at the start of each
+     * loop, before anything reads the constants, so every edit made since
+     * the last loop takes effect together and controllers never see a
+     * half-updated set of gains.
+     */
+    public static void applyPending() {
+        if (stagedVersion == appliedVersion)
+            return;
+
+        // Take a snapshot of the staged edits
+        synchronized (stageLock) {
+            for (int i = 0; i < count; i++) {
+                applying[i] = staged[i];
+                applyValues[i] = stagedValues[i];
+                staged[i] = false;
+            }
+            appliedVersion = stagedVersion;
+        }
+
+        boolean changed = false;
+        for (int i = 0; i < count; i++) {
+            if (applying[i]) {
+                all[i].setValue(applyValues[i]);
+                changed |= all[i].changed;
+            }
+        }
+
+        // Our own updates to the table come back here too; ignore them
+        if (changed)
+            notifyListeners();
+    }
+
+    /**
+     * Send the current value of every constant to NetworkTables
+     */
+    private static void publish() {
+        if (table == null)
+            return;
+        for (int i = 0; i < count; i++)
+            table.putNumber(all[i].getName(), all[i].getValue());
     }
 
     /**
      * Update the constants. Read the latest values from the constants file
      */
     public static void update() {
-        Logger.info("Constants.update", "Reading constants from file '" + kFilename + "'");
         FileConnection file = null;
-        BufferedReader reader = null;
-        Vector lines = null;
+        InputStream in = null;
 
         try {
             // Open the connection to the file
             file = (FileConnection) Connector.open("file:///" + kFilename, Connector.READ);
-            reader = new BufferedReader(new InputStreamReader(file.openDataInputStream()));
 
-            // Read in each line of the constants file
-            lines = new Vector();
-            String l;
-            while ((l = reader.readLine()) != null) {
-                lines.addElement(l);
+            // Don't bother parsing if nothing has changed since the last read
+            long size = file.fileSize();
+            long modified = file.lastModified();
+            if (size == lastSize && modified == lastModified) {
+                Logger.info("Constants.update", "Constants file unchanged, skipping");
+                return;
+            }
+
+            Logger.info("Constants.update", "Reading constants from file '" + kFilename + "'");
+            in = file.openInputStream();
+            if (parse(in)) {
+                lastSize = size;
+                lastModified = modified;
             }
         } catch (IOException e) {
             Logger.error("Constants.update", "Error reading constants file!");
             Logger.error("Constants.update", e.getMessage());
         } finally {
             try {
-                if (reader != null)
-                    reader.close();
+                if (in != null)
+                    in.close();
                 if (file != null)
                     file.close();
             } catch (IOException ex) {
@@ -117,41 +316,126 @@ public final class Constants {
             }
         }
 
-        if (lines != null) {
-            // Parse each line
-            Enumeration e = lines.elements();
-            while (e.hasMoreElements()) {
-                // Get the next line
-                String l = (String) e.nextElement();
+        notifyListeners();
+        publish();
+    }
 
-                // Ignore comment lines and whitespace
-                if (l.startsWith("#") || l.equals(""))
-                    continue;
+    /**
+     * Parse the constants file in a single pass, applying each value as it
+     * is read. Each line has the form "name = value"; blank lines and lines
+     * starting with '#' are ignored.
+     * @param in the contents of the constants file
+     * @return true if every line was valid
+     * @throws IOException if the file could not be read
+     */
+    private static boolean parse(InputStream in) throws IOException {
+        boolean valid = true;
+        int lineNumber = 1;
+        int keyLength = 0;
+        int valueLength = 0;
+        boolean comment = false;
+        boolean inValue = false;
+        boolean overflow = false;
 
-                // Seperate into name and value
-                int index = l.indexOf("=");
+        int count;
+        do {
+            count = in.read(readBuffer, 0, readBuffer.length);
 
-                // Ensure that the equals sign was found
-                if (index != -1) {
-                    String key = l.substring(0, index).trim();
-                    double value = Double.parseDouble(l.substring(index + 1));
+            // Treat the end of the file as one last line break
+            int end = (count == -1) ? 1 : count;
+            for (int i = 0; i < end; i++) {
+                char c = (count == -1) ? '\n' : (char) (readBuffer[i] & 0xFF);
 
-                    // Look for the matching Constant
-                    Constant c = (Constant) constants.get(key);
-                    if (c != null) {
-                        c.setValue(value);
-                    } else {
-                        Logger.error("Constants.update", "Constant '" + key + "' not found");
+                if (c == '\n') {
+                    if (!comment && (keyLength > 0 || inValue)) {
+                        if (overflow) {
+                            Logger.error("Constants.update", "Line " + lineNumber + ": line too long");
+                            valid = false;
+                        } else if (!parseLine(lineNumber, keyLength, valueLength, inValue)) {
+                            valid = false;
+                        }
                     }
+                    lineNumber++;
+                    keyLength = valueLength = 0;
+                    comment = inValue = overflow = false;
+                } else if (comment || c == '\r') {
+                    continue;
+                } else if (c == '#' && keyLength == 0 && !inValue) {
+                    comment = true;
+                } else if (c == '=' && !inValue) {
+                    inValue = true;
+                } else if ((c == ' ' || c == '\t') && (inValue ? valueLength == 0 : keyLength == 0)) {
+                    // Skip leading whitespace; trailing whitespace is trimmed later
+                    continue;
+                } else if (inValue) {
+                    if (valueLength < valueBuffer.length)
+                        valueBuffer[valueLength++] = c;
+                    else
+                        overflow = true;
                 } else {
-                    Logger.error("Constants.update", "Invalid syntax: '=' not found");
+                    if (keyLength < keyBuffer.length)
+                        keyBuffer[keyLength++] = c;
+                    else
+                        overflow = true;
                 }
             }
+        } while (count != -1);
+
+        return valid;
+    }
+
+    /**
+     * Apply a single "name = value" line from the constants file
+     * @return true if the line was valid
+     */
+    private static boolean parseLine(int lineNumber, int keyLength, int valueLength, boolean hasValue) {
+        String key = new String(keyBuffer, 0, keyLength).trim();
+        if (!hasValue) {
+            Logger.error("Constants.update", "Line " + lineNumber + ": invalid syntax, '=' not found");
+            return false;
+        }
+
+        Constant c = (Constant) constants.get(key);
+        if (c == null) {
+            Logger.error("Constants.update", "Line " + lineNumber + ": constant '" + key + "' not found");
+            return false;
+        }
+
+        String value = new String(valueBuffer, 0, valueLength).trim();
+        try {
+            c.setValue(Double.parseDouble(value));
+        } catch (NumberFormatException ex) {
+            Logger.error("Constants.update", "Line " + lineNumber + ": invalid value '" + value + "' for " + key);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Report the constants that changed and notify only the listeners
+     * that depend on them
+     */
+    private static void notifyListeners() {
+        int changed = 0;
+        for (int i = 0; i < count; i++) {
+            Constant c = all[i];
+            if (c.changed) {
+                Logger.info("Constants.update", c.getName() + " changed to " + c.getValue());
+                changed++;
+            }
+        }
+        Logger.info("Constants.update", "{} constants changed", changed);
+
+        if (changed > 0) {
+            for (int i = 0; i < listeners.size(); i++) {
+                Registration r = (Registration) listeners.elementAt(i);
+                if (r.isAffected())
+                    r.listener.updateConstants();
+            }
         }
 
-        // Trigger update in subsystems
-        Drivetrain.getInstance().updateConstants();
-        Pickup.getInstance().updateConstants();
-        Shooter.getInstance().updateConstants();
+        // Reset for the next update
+        for (int i = 0; i < count; i++)
+            all[i].changed = false;
     }
 }
@@ -16,13 +16,18 @@ import org.lunatecs316.frc2014.autonomous.AutonomousMode;
 import org.lunatecs316.frc2014.autonomous.DriveForwardAutonomous;
 import org.lunatecs316.frc2014.autonomous.HighGoalAutonomous;
 import org.lunatecs316.frc2014.autonomous.LowGoalAutonomous;
+import org.lunatecs316.frc2014.autonomous.PathFollowingAutonomous;
 import org.lunatecs316.frc2014.autonomous.StationaryTwoBallAutonomous;
 import org.lunatecs316.frc2014.autonomous.TwoBallAutonomous;
+import org.lunatecs316.frc2014.lib.CachedOutput;
 import org.lunatecs316.frc2014.lib.IterativeTimer;
+import org.lunatecs316.frc2014.lib.LogWriter;
 import org.lunatecs316.frc2014.lib.Logger;
+import org.lunatecs316.frc2014.lib.Telemetry;
 import org.lunatecs316.frc2014.lib.XboxController;
 import org.lunatecs316.frc2014.subsystems.Drivetrain;
 import org.lunatecs316.frc2014.subsystems.Pickup;
+import org.lunatecs316.frc2014.subsystems.SensorFrame;
 import org.lunatecs316.frc2014.subsystems.Shooter;
 
 /**
@@ -45,8 +50,13 @@ public class SamXV extends IterativeRobot {
     private Pickup pickup = Pickup.getInstance();
     private Shooter shooter = Shooter.getInstance();
 
+    /** Telemetry is only recorded every this many loops while disabled (once a second) */
+    private static final int kDisabledTelemetryDecimation = 50;
+
     // Teleop loop count
     private int loopCount = 0;
+    private int disabledLoopCount = 0;
+    private IterativeTimer loopTimer = new IterativeTimer();
 
     /**
      * This function is run when the robot is first started up and should be
@@ -58,6 +68,9 @@ public class SamXV extends IterativeRobot {
         Logger.info("robotInit", "Robot intialization starting...");
         IterativeTimer initTimer = new IterativeTimer();
 
+        // Allow constants to be tuned from the dashboard
+        Constants.startLiveTuning();
+
         // Start the compressor
         compressor.start();
         LiveWindow.addActuator("Default", "Compressor", compressor);
@@ -72,7 +85,7 @@ public class SamXV extends IterativeRobot {
         drivetrain.raiseCatchingAid();
         pickup.raise();
 
-        Logger.info("robotInit", "Robot initalized! Completed in " + initTimer.getValue() + "ms");
+        Logger.info("robotInit", "Robot initalized! Completed in {}ms", initTimer.getValue());
     }
 
     /**
@@ -84,29 +97,39 @@ public class SamXV extends IterativeRobot {
         switch (mode) {
             case 0:
                 auto = new HighGoalAutonomous();
-                Logger.info("autonomousInit", "Running HighGoalAutonomous");
+                Logger.Auto.info("autonomousInit", "Running HighGoalAutonomous");
                 break;
             case 1:
                 auto = new TwoBallAutonomous();
-                Logger.info("autonomousInit", "Running TwoBallAutonomous");
+                Logger.Auto.info("autonomousInit", "Running TwoBallAutonomous");
                 break;
             case 2:
                 auto = new StationaryTwoBallAutonomous();
-                Logger.info("autonomousInit", "Running StationaryTwoBallAutonomous");
+                Logger.Auto.info("autonomousInit", "Running StationaryTwoBallAutonomous");
                 break;
             case 3:
                 auto = new LowGoalAutonomous();
-                Logger.info("autonomousInit", "Running LowGoalAutonomous");
+                Logger.Auto.info("autonomousInit", "Running LowGoalAutonomous");
                 break;
             case 4:
                 auto= new DriveForwardAutonomous();
-                Logger.info("autonomousInit", "Running DriveForwardAutonomous");
+                Logger.Auto.info("autonomousInit", "Running DriveForwardAutonomous");
+                break;
+            case 5:
+                auto = new PathFollowingAutonomous();
+                Logger.Auto.info("autonomousInit", "Running PathFollowingAutonomous");
                 break;
             default:
-                Logger.warning("autonomousInit", "Invalid Autonomous Mode");
+                Logger.Auto.warning("autonomousInit", "Invalid Autonomous Mode");
                 break;
         }
 
+        // Start new log files for the match
+        Logger.startPhase("autonomous");
+
+        if (!drivetrain.isGyroCalibrated())
+            Logger.Auto.warning("autonomousInit", "Gyro is still calibrating");
+
         // Common setup for all autonomous modes
         drivetrain.shiftDown();
         drivetrain.resetGyro();
@@ -124,8 +147,10 @@ public class SamXV extends IterativeRobot {
      * This function is called periodically during autonomous
      */
     public void autonomousPeriodic() {
+        beginLoop();
         if (auto != null)
             auto.run();
+        updateTelemetry();
         updateSmartDashboard();
     }
 
@@ -134,6 +159,7 @@ public class SamXV extends IterativeRobot {
      */
     public void teleopInit() {
         Logger.info("teleopInit", "Entering teleop mode...");
+        Logger.startPhase("teleop");
         teleop.init();
     }
 
@@ -141,7 +167,9 @@ public class SamXV extends IterativeRobot {
      * This function is called periodically during operator control
      */
     public void teleopPeriodic() {
+        beginLoop();
         teleop.run();
+        updateTelemetry();
         updateSmartDashboard();
     }
 
@@ -150,7 +178,15 @@ public class SamXV extends IterativeRobot {
      */
     public void disabledInit() {
         Logger.info("disabledInit", "Entering disabled mode...");
+        shooter.logStatistics();
+        CachedOutput.logStatistics(Logger.Main, "SamXV#disabledInit");
+        Logger.startPhase("disabled");
+        disabledLoopCount = 0;
         Constants.update();
+        shooter.loadShotTable();
+
+        // LiveWindow writes the hardware directly in test mode
+        CachedOutput.invalidateAll();
 
         // Set default states of the subsystems
         drivetrain.arcadeDrive(0, 0);
@@ -163,22 +199,31 @@ public class SamXV extends IterativeRobot {
      * This function is called periodically while the robot is disabled
      */
     public void disabledPeriodic() {
+        beginLoop();
         teleop.updateJoysticks();
 
         if (teleop.getDriverController().getButtonPressed(XboxController.ButtonA)) {
             drivetrain.reinitGyro();
         }
         if (teleop.getDriverController().getButtonPressed(XboxController.ButtonB)) {
-            Logger.writeToFile();
+            Logger.sync();
         }
         if (teleop.getDriverController().getButtonPressed(XboxController.ButtonX)) {
             Constants.update();
+            shooter.loadShotTable();
+        }
+        if (teleop.getDriverController().getButtonPressed(XboxController.Start)
+                && Constants.ShooterCalibrationMode.getValue() != 0) {
+            shooter.adoptCalibration();
         }
         if (teleop.getDriverController().getButtonPressed(XboxController.ButtonY)) {
             drivetrain.resetEncoders();
             drivetrain.resetGyro();
         }
 
+        // A robot left disabled in the queue would otherwise push the last match out of the logs
+        if (disabledLoopCount++ % kDisabledTelemetryDecimation == 0)
+            updateTelemetry();
         updateSmartDashboard();
     }
 
@@ -197,6 +242,31 @@ public class SamXV extends IterativeRobot {
         return DriverStation.getInstance().getDigitalIn(1);
     }
 
+    /**
+     * Common bookkeeping at the start of every periodic loop
+     */
+    private void beginLoop() {
+        Constants.applyPending();
+        Telemetry.beginLoop();
+
+        // Read every sensor once for the whole loop
+        SensorFrame.getInstance().begin();
+        drivetrain.updateSensors();
+        pickup.updateSensors();
+        shooter.updateSensors();
+        Logger.Loop.debug("SamXV#beginLoop", "Loop period: {}ms", loopTimer.getValue());
+        loopTimer.reset();
+    }
+
+    /**
+     * Record sensor data for the telemetry log
+     */
+    private void updateTelemetry() {
+        drivetrain.updateTelemetry();
+        pickup.updateTelemetry();
+        shooter.updateTelemetry();
+    }
+
     /**
      * Send data to the SmartDashboard
      */
@@ -206,6 +276,7 @@ public class SamXV extends IterativeRobot {
             pickup.updateSmartDashboard();
             shooter.updateSmartDashboard();
             SmartDashboard.putBoolean(("Override"), manualOverride());
+            SmartDashboard.putNumber("Log Errors", LogWriter.getErrorCount());
             loopCount = 0;
         } else {
             loopCount++;
@@ -24,6 +24,11 @@ public class TeleopControl {
 
     private boolean cheesyMode;
 
+    // Last shot taken, waiting to be marked as made or missed
+    private boolean shotPending;
+    private double shotDistance;
+    private double shotArmPosition;
+
     /**
      * Setup for Teleop mode
      */
@@ -93,6 +98,17 @@ public class TeleopControl {
         else
             pickup.stopRollers();
 
+        // Shot calibration: mark the last shot as made or missed
+        if (shotPending && Constants.ShooterCalibrationMode.getValue() != 0) {
+            if (driverController.getButtonPressed(XboxController.Start)) {
+                shooter.recordShot(shotDistance, shotArmPosition, true);
+                shotPending = false;
+            } else if (driverController.getButtonPressed(XboxController.Back)) {
+                shooter.recordShot(shotDistance, shotArmPosition, false);
+                shotPending = false;
+            }
+        }
+
         // Shooter
         if (operatorJoystick.getButtonPressed(1) && ((pickup.isLowered() && shooter.ballIsLoaded()) || SamXV.manualOverride())) {
             logShot();
@@ -144,8 +160,10 @@ public class TeleopControl {
         double distance = drivetrain.getRangeFinderDistance();
         double angle = drivetrain.getGyroAngle();
         double armPosition = shooter.getArmPosition();
-        Logger.enableFileLogging(true);
-        Logger.debug("logShot", "ArmPos: " + armPosition + " Dist: " + distance + " GyroAngle: " + angle);
-        Logger.enableFileLogging(false);
+        Logger.Shots.info("logShot", "ArmPos: {} Dist: {} GyroAngle: {}", armPosition, distance, angle);
+
+        shotPending = true;
+        shotDistance = distance;
+        shotArmPosition = armPosition;
     }
 }
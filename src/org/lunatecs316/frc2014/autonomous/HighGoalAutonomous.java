@@ -35,7 +35,7 @@ public class HighGoalAutonomous extends AutonomousMode {
         // Set the default state
         state = kCheckForHotGoal;
 
-        Logger.debug("BasicAutonomous#init", "State: kDrivingForwards");
+        Logger.Auto.debug("BasicAutonomous#init", "State: kDrivingForwards");
 
         // Reset the state timer
         stateTimer.setExpiration(1100);
@@ -49,12 +49,12 @@ public class HighGoalAutonomous extends AutonomousMode {
             case kCheckForHotGoal:
                 if (stateTimer.hasExpired()) {
                     if (visionData.getBoolean("goalIsHot", true)) {
-                        Logger.debug("BasicAutonomous#run", "State: kDriveForwards");
+                        Logger.Auto.debug("BasicAutonomous#run", "State: kDriveForwards");
                         state = kDriveForwards;
                         stateTimer.setExpiration(3500);
                     } else {
                         state = kWaitForHotGoal;
-                        Logger.debug("BasicAutonomous#run", "State: kWaitForHotGoal");
+                        Logger.Auto.debug("BasicAutonomous#run", "State: kWaitForHotGoal");
                         stateTimer.setExpiration(3000);
                     }
                     break;
@@ -62,7 +62,7 @@ public class HighGoalAutonomous extends AutonomousMode {
             case kWaitForHotGoal:
                 if (stateTimer.hasExpired()) {
                     state = kDriveForwards;
-                    Logger.debug("BasicAutonomous#run", "State: kDriveForwards");
+                    Logger.Auto.debug("BasicAutonomous#run", "State: kDriveForwards");
                     stateTimer.setExpiration(3500);
                 }
                 break;
@@ -74,26 +74,26 @@ public class HighGoalAutonomous extends AutonomousMode {
                     drivetrain.arcadeDrive(0.0, 0.0);
                     shooter.setWinch(0.0);
                     state = kFire;
-                    Logger.debug("BasicAutonomous#run", "State: kCheckForHotGoal");
+                    Logger.Auto.debug("BasicAutonomous#run", "State: kCheckForHotGoal");
                 }
                 break;
             case kFire:
                 shooter.fire();
                 state = kWaitForReload;
-                Logger.debug("BasicAutonomous#run", "State: kWaitForReload");
+                Logger.Auto.debug("BasicAutonomous#run", "State: kWaitForReload");
                 stateTimer.setExpiration(4000);
                 break;
             case kWaitForReload:
                 if (shooter.atLoadingPosition() || stateTimer.hasExpired()) {
                     state = kDone;
-                    Logger.debug("BasicAutonomous#run", "State: kDone");
+                    Logger.Auto.debug("BasicAutonomous#run", "State: kDone");
                 }
                 break;
             case kDone:
                 shooter.setWinch(0.0);
                 break;
             default:
-                Logger.error("BasicAutonomous#run", "Invalid autonomous state");
+                Logger.Auto.error("BasicAutonomous#run", "Invalid autonomous state");
                 break;
         }
     }
@@ -0,0 +1,92 @@
+package org.lunatecs316.frc2014.autonomous;
+
+import org.lunatecs316.frc2014.Constants;
+import org.lunatecs316.frc2014.lib.IterativeTimer;
+import org.lunatecs316.frc2014.lib.Logger;
+import org.lunatecs316.frc2014.lib.Path;
+import org.lunatecs316.frc2014.lib.PurePursuit;
+
+/**
+ * Follow a curved path to the shooting position using pure pursuit on the
+ * drivetrain's pose estimate, then score the ball in the high goal
+ * @author Domenic Rodriguez
+ */
+public class PathFollowingAutonomous extends AutonomousMode {
+    private static final int kFollowPath = 0;
+    private static final int kFire = 1;
+    private static final int kWaitForReload = 2;
+    private static final int kDone = 3;
+
+    // Waypoints in inches from the starting position. Drives eight feet
+    // forward while moving two feet to the right, ending square to the wall.
+    private static final double[] kWaypointX = {0.0, 36.0, 72.0, 96.0};
+    private static final double[] kWaypointY = {0.0, 0.0, 24.0, 24.0};
+    private static final double kPathSpacing = 1.0;
+
+    private Path path = new Path(kWaypointX, kWaypointY, kPathSpacing);
+    private PurePursuit follower;
+    private IterativeTimer stateTimer = new IterativeTimer();
+    private int state;
+
+    /**
+     * @see AutonomousMode#init()
+     */
+    public void init() {
+        follower = new PurePursuit(path, Constants.PathLookahead.getValue(),
+                Constants.DrivetrainTrackWidth.getValue());
+        drivetrain.resetPose(0.0, 0.0, 0.0);
+        pickup.raise();
+
+        state = kFollowPath;
+        Logger.Auto.debug("PathFollowingAutonomous#init", "State: kFollowPath");
+        stateTimer.setExpiration(5000);
+    }
+
+    /**
+     * @see AutonomousMode#run()
+     */
+    public void run() {
+        switch (state) {
+            case kFollowPath:
+                shooter.setPosition(Constants.AutonomousShooterSetpoint.getValue());
+
+                double x = drivetrain.getPoseX();
+                double y = drivetrain.getPoseY();
+                if (follower.isFinished(x, y, Constants.PathTolerance.getValue()) || stateTimer.hasExpired()) {
+                    drivetrain.tankDrive(0.0, 0.0);
+                    state = kFire;
+                    Logger.Auto.debug("PathFollowingAutonomous#run", "State: kFire");
+                    break;
+                }
+
+                // Slow down over the last part of the path
+                double speed = Constants.PathSpeed.getValue()
+                        * Math.min(1.0, follower.getRemaining() / Constants.PathSlowdownDistance.getValue());
+                speed = Math.max(speed, Constants.PathMinSpeed.getValue());
+
+                follower.update(x, y, drivetrain.getPoseHeading(), speed);
+                drivetrain.tankDrive(follower.getLeft(), follower.getRight());
+                break;
+            case kFire:
+                shooter.setWinch(0.0);
+                shooter.fire();
+                state = kWaitForReload;
+                Logger.Auto.debug("PathFollowingAutonomous#run", "State: kWaitForReload");
+                stateTimer.setExpiration(4000);
+                break;
+            case kWaitForReload:
+                if (shooter.atLoadingPosition() || stateTimer.hasExpired()) {
+                    state = kDone;
+                    Logger.Auto.debug("PathFollowingAutonomous#run", "State: kDone");
+                }
+                break;
+            case kDone:
+                drivetrain.tankDrive(0.0, 0.0);
+                shooter.setWinch(0.0);
+                break;
+            default:
+                Logger.Auto.error("PathFollowingAutonomous#run", "Invalid autonomous state");
+                break;
+        }
+    }
+}
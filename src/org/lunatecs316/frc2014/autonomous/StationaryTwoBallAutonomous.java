@@ -23,7 +23,7 @@ public class StationaryTwoBallAutonomous extends AutonomousMode {
         state = kFire;
         firstShot = true;
         stateTimer.reset();
-        Logger.debug("StationaryTwoBallAutonomous#init", "State: kFire");
+        Logger.Auto.debug("StationaryTwoBallAutonomous#init", "State: kFire");
     }
 
     public void run() {
@@ -42,11 +42,11 @@ public class StationaryTwoBallAutonomous extends AutonomousMode {
                     if (firstShot) {
                         firstShot = false;
                         state = kWaitForReload;
-                        Logger.debug("StationaryTwoBallAutonomous#run", "State: kWaitForReload");
+                        Logger.Auto.debug("StationaryTwoBallAutonomous#run", "State: kWaitForReload");
                         stateTimer.setExpiration(4000);
                     } else {
                         state = kDriveForwards;
-                        Logger.debug("StationaryTwoBallAutonomous#run", "State: kDriveForwards");
+                        Logger.Auto.debug("StationaryTwoBallAutonomous#run", "State: kDriveForwards");
                         stateTimer.setExpiration(2125);
                     }
                 }
@@ -57,7 +57,7 @@ public class StationaryTwoBallAutonomous extends AutonomousMode {
                     state = kWaitForReload;
                 else if (shooter.atLoadingPosition() || stateTimer.hasExpired()) {
                     state = kReload;
-                    Logger.debug("StationaryTwoBallAutonomous#run", "State: kReload");
+                    Logger.Auto.debug("StationaryTwoBallAutonomous#run", "State: kReload");
                     stateTimer.setExpiration(2500);
                 }
                 break;
@@ -66,7 +66,7 @@ public class StationaryTwoBallAutonomous extends AutonomousMode {
                 if (stateTimer.hasExpired()) {
                     pickup.setRollerSpeed(0.0);
                     state = kFire;
-                    Logger.debug("StationaryTwoBallAutonomous#run", "State: kFire");
+                    Logger.Auto.debug("StationaryTwoBallAutonomous#run", "State: kFire");
                 }
                 break;
             case kDriveForwards:
@@ -78,7 +78,7 @@ public class StationaryTwoBallAutonomous extends AutonomousMode {
                 if (stateTimer.hasExpired()) {
                     drivetrain.arcadeDrive(0.0, 0.0);
                     state = kDone;
-                    Logger.debug("StationaryTwoBallAutonomous#run", "State: kDone");
+                    Logger.Auto.debug("StationaryTwoBallAutonomous#run", "State: kDone");
                 }
                 break;
             case kDone:
@@ -87,7 +87,7 @@ public class StationaryTwoBallAutonomous extends AutonomousMode {
                 pickup.setRollerSpeed(0.0);
                 break;
             default:
-                Logger.error("StationaryTwoBallAutonomous#run", "Invalid autonomous state");
+                Logger.Auto.error("StationaryTwoBallAutonomous#run", "Invalid autonomous state");
                 break;
         }
     }
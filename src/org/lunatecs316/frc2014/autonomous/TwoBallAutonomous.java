@@ -35,7 +35,7 @@ public class TwoBallAutonomous extends AutonomousMode {
         state = kDriveForwards;
         done = false;
 
-        Logger.debug("TwoBallAutonomous#init", "State: kDrivingForwards");
+        Logger.Auto.debug("TwoBallAutonomous#init", "State: kDrivingForwards");
     }
 
     /**
@@ -54,7 +54,7 @@ public class TwoBallAutonomous extends AutonomousMode {
                             pickup.setRollerSpeed(0.5);
                             drivetrain.arcadeDrive(0.0, 0.0);
                             state = kFireFirstShot;
-                            Logger.debug("TwoBallAutonomous#run", "State: kFire");
+                            Logger.Auto.debug("TwoBallAutonomous#run", "State: kFire");
                             stateTimer.reset();
                         }
                     }
@@ -64,7 +64,7 @@ public class TwoBallAutonomous extends AutonomousMode {
                     pickup.setRollerSpeed(0.0);
                     shooter.fire();
                     state = kWaitForReload;
-                    Logger.debug("TwoBallAutonomous#run", "State: kWaitForReload");
+                    Logger.Auto.debug("TwoBallAutonomous#run", "State: kWaitForReload");
                     stateTimer.setExpiration(3250);
                     break;
                 case kWaitForReload:
@@ -72,7 +72,7 @@ public class TwoBallAutonomous extends AutonomousMode {
                         shooter.setPosition(Constants.AutonomousShooterSetpoint.getValue());
                     if (stateTimer.hasExpired()) {
                         state = kReload;
-                        Logger.debug("TwoBallAutonomous#run", "State: kReload");
+                        Logger.Auto.debug("TwoBallAutonomous#run", "State: kReload");
                         stateTimer.setExpiration(1350);
                     }
                     break;
@@ -82,7 +82,7 @@ public class TwoBallAutonomous extends AutonomousMode {
                     if (stateTimer.hasExpired()) {
                         pickup.setRollerSpeed(0.0);
                         state = kFireSecondShot;
-                        Logger.debug("TwoBallAutonomous#run", "State: kFireSecondShot");
+                        Logger.Auto.debug("TwoBallAutonomous#run", "State: kFireSecondShot");
                         stateTimer.reset();
                     }
                     break;
@@ -91,11 +91,11 @@ public class TwoBallAutonomous extends AutonomousMode {
                         shooter.setWinch(0.0);
                         shooter.fire();
                         done = true;
-                        Logger.debug("TwoBallAutonomous#run", "Done!");
+                        Logger.Auto.debug("TwoBallAutonomous#run", "Done!");
                     }
                     break;
                 default:
-                    Logger.error("TwoBallAutonomous#run", "Invalid autonomous state");
+                    Logger.Auto.error("TwoBallAutonomous#run", "Invalid autonomous state");
                     break;
             }
         }
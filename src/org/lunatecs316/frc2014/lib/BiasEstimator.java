@@ -0,0 +1,61 @@
+package org.lunatecs316.frc2014.lib;
+
+/**
+ * Running mean of a sensor's bias, for sensors that read a steady value
+ * when they should read zero. Batches of samples taken while the true value
+ * is known to be zero are folded into the mean. Until maxWeight samples
+ * have been seen this is an exact mean; after that older samples are slowly
+ * forgotten so the estimate can follow a drifting bias.
+ * @author Domenic Rodriguez
+ */
+public class BiasEstimator {
+    private double m_maxWeight;
+    private double m_bias;
+    private double m_weight;
+
+    /**
+     * Create a new estimator
+     * @param maxWeight the number of samples to remember
+     */
+    public BiasEstimator(double maxWeight) {
+        m_maxWeight = maxWeight;
+    }
+
+    /**
+     * Start again from a known bias
+     * @param bias the starting estimate
+     * @param weight how many samples the starting estimate is worth
+     */
+    public void reset(double bias, double weight) {
+        m_bias = bias;
+        m_weight = Math.min(weight, m_maxWeight);
+    }
+
+    /**
+     * Add a batch of samples taken while the true value was zero
+     * @param sum the sum of the samples
+     * @param count the number of samples
+     */
+    public void update(double sum, long count) {
+        if (count <= 0)
+            return;
+        m_weight = Math.min(m_weight + count, m_maxWeight);
+        m_bias += (sum / count - m_bias) * Math.min(count / m_weight, 1.0);
+    }
+
+    /**
+     * Get the estimated bias
+     * @return the bias, per sample
+     */
+    public double getBias() {
+        return m_bias;
+    }
+
+    /**
+     * Get how many samples the estimate is based on
+     * @return the weight of the estimate
+     */
+    public double getWeight() {
+        return m_weight;
+    }
+}
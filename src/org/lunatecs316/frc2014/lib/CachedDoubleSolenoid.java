@@ -0,0 +1,51 @@
+package org.lunatecs316.frc2014.lib;
+
+import edu.wpi.first.wpilibj.DoubleSolenoid;
+
+/**
+ * Double solenoid wrapper that only writes to the hardware when the state
+ * changes
+ * @author Domenic Rodriguez
+ */
+public class CachedDoubleSolenoid extends CachedOutput {
+    private DoubleSolenoid m_solenoid;
+    private DoubleSolenoid.Value m_value;
+
+    /**
+     * Create a new cached double solenoid
+     * @param name the name of the actuator
+     * @param solenoid the double solenoid to write to
+     */
+    public CachedDoubleSolenoid(String name, DoubleSolenoid solenoid) {
+        super(name);
+        m_solenoid = solenoid;
+    }
+
+    /**
+     * Get the last state set
+     * @return the solenoid state
+     */
+    public DoubleSolenoid.Value get() {
+        return (m_value != null) ? m_value : m_solenoid.get();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void invalidate() {
+        m_value = null;
+    }
+
+    /**
+     * Set the solenoid, skipping the write if it is already in that state
+     * @param value the new state
+     */
+    public void set(DoubleSolenoid.Value value) {
+        boolean write = value != m_value;
+        if (write) {
+            m_solenoid.set(value);
+            m_value = value;
+        }
+        count(write);
+    }
+}
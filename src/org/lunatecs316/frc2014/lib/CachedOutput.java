@@ -0,0 +1,86 @@
+package org.lunatecs316.frc2014.lib;
+
+/**
+ * Base for actuator wrappers that remember the last value sent to the
+ * hardware and skip writes that wouldn't change anything. Every wrapper is
+ * registered by name so the number of writes saved can be logged.
+ * @author Domenic Rodriguez
+ */
+public abstract class CachedOutput {
+    public static final int kMaxOutputs = 16;
+
+    private static CachedOutput[] outputs = new CachedOutput[kMaxOutputs];
+    private static int outputCount;
+
+    private String m_name;
+    private int m_requests;
+    private int m_writes;
+
+    /**
+     * Create a new output and add it to the registry
+     * @param name the name of the actuator
+     */
+    protected CachedOutput(String name) {
+        m_name = name;
+        synchronized (CachedOutput.class) {
+            if (outputCount < kMaxOutputs)
+                outputs[outputCount++] = this;
+        }
+    }
+
+    /**
+     * Count a request to set the output
+     * @param written true if the request was passed on to the hardware
+     */
+    protected void count(boolean written) {
+        m_requests++;
+        if (written)
+            m_writes++;
+    }
+
+    /**
+     * Forget the cached value, so the next set always writes through
+     */
+    public abstract void invalidate();
+
+    public String getName() {
+        return m_name;
+    }
+
+    /**
+     * Get the number of times the output was set
+     * @return the number of requests
+     */
+    public int getRequestCount() {
+        return m_requests;
+    }
+
+    /**
+     * Get the number of times the hardware was actually written
+     * @return the number of writes
+     */
+    public int getWriteCount() {
+        return m_writes;
+    }
+
+    /**
+     * Forget the cached value of every output. Use after something else may
+     * have written the hardware directly, like LiveWindow in test mode.
+     */
+    public static void invalidateAll() {
+        for (int i = 0; i < outputCount; i++)
+            outputs[i].invalidate();
+    }
+
+    /**
+     * Write the request and write counts of every output to a log
+     * @param log the log channel to write to
+     * @param context the context for the log message
+     */
+    public static void logStatistics(LogChannel log, String context) {
+        for (int i = 0; i < outputCount; i++) {
+            CachedOutput o = outputs[i];
+            log.info(context, o.m_name + ": {} requests, {} writes", o.m_requests, o.m_writes);
+        }
+    }
+}
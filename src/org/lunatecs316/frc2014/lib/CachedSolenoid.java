@@ -0,0 +1,52 @@
+package org.lunatecs316.frc2014.lib;
+
+import edu.wpi.first.wpilibj.Solenoid;
+
+/**
+ * Solenoid wrapper that only writes to the hardware when the state changes
+ * @author Domenic Rodriguez
+ */
+public class CachedSolenoid extends CachedOutput {
+    private Solenoid m_solenoid;
+    private boolean m_value;
+    private boolean m_valid;
+
+    /**
+     * Create a new cached solenoid
+     * @param name the name of the actuator
+     * @param solenoid the solenoid to write to
+     */
+    public CachedSolenoid(String name, Solenoid solenoid) {
+        super(name);
+        m_solenoid = solenoid;
+    }
+
+    /**
+     * Get the last state set
+     * @return true if the solenoid is on
+     */
+    public boolean get() {
+        return m_valid ? m_value : m_solenoid.get();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void invalidate() {
+        m_valid = false;
+    }
+
+    /**
+     * Set the solenoid, skipping the write if it is already in that state
+     * @param on the new state
+     */
+    public void set(boolean on) {
+        boolean write = !m_valid || on != m_value;
+        if (write) {
+            m_solenoid.set(on);
+            m_value = on;
+            m_valid = true;
+        }
+        count(write);
+    }
+}
@@ -0,0 +1,111 @@
+package org.lunatecs316.frc2014.lib;
+
+import edu.wpi.first.wpilibj.SpeedController;
+
+/**
+ * Speed controller wrapper that only writes to the hardware when the output
+ * changes by more than kEpsilon. The last value is still written again
+ * every kKeepAlivePeriod, so motor safety keeps being fed while the output
+ * holds steady.
+ * @author Domenic Rodriguez
+ */
+public class CachedSpeedController extends CachedOutput implements SpeedController {
+    /** Smallest change in output that is written to the hardware */
+    public static final double kEpsilon = 0.001;
+    /** Longest time between writes, in milliseconds */
+    public static final long kKeepAlivePeriod = 100;
+
+    private SpeedController m_controller;
+    private double m_value;
+    private boolean m_valid;
+    private long m_lastWrite;
+
+    /**
+     * Create a new cached speed controller
+     * @param name the name of the actuator
+     * @param controller the speed controller to write to
+     */
+    public CachedSpeedController(String name, SpeedController controller) {
+        super(name);
+        m_controller = controller;
+    }
+
+    /**
+     * Get the last value set
+     * @return the output value
+     */
+    public double get() {
+        return m_valid ? m_value : m_controller.get();
+    }
+
+    /**
+     * Set the output, skipping the write if nothing would change
+     * @param speed the new output value
+     */
+    public void set(double speed) {
+        long now = System.currentTimeMillis();
+        boolean write = needsWrite(speed, now);
+        if (write) {
+            m_controller.set(speed);
+            written(speed, now);
+        }
+        count(write);
+    }
+
+    /**
+     * Set the output. RobotDrive writes every motor through this method with
+     * a sync group of 0, which PWM controllers ignore, so those writes are
+     * skipped just like {@link #set(double)}. A real CAN sync group always
+     * writes through, since the controller waits for the group update.
+     * @param speed the new output value
+     * @param syncGroup the update group
+     */
+    public void set(double speed, byte syncGroup) {
+        long now = System.currentTimeMillis();
+        boolean write = syncGroup != 0 || needsWrite(speed, now);
+        if (write) {
+            m_controller.set(speed, syncGroup);
+            written(speed, now);
+        }
+        count(write);
+    }
+
+    /**
+     * Disable the controller. The next set always writes through.
+     */
+    public void disable() {
+        m_controller.disable();
+        invalidate();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void invalidate() {
+        m_valid = false;
+    }
+
+    /**
+     * Check if a new output has to be written to the hardware
+     */
+    private boolean needsWrite(double speed, long now) {
+        return !m_valid || Math.abs(speed - m_value) > kEpsilon || now - m_lastWrite >= kKeepAlivePeriod;
+    }
+
+    /**
+     * Remember the value just written to the hardware
+     */
+    private void written(double speed, long now) {
+        m_value = speed;
+        m_valid = true;
+        m_lastWrite = now;
+    }
+
+    /**
+     * Set the output from a PID loop
+     * @param output the new output value
+     */
+    public void pidWrite(double output) {
+        set(output);
+    }
+}
@@ -0,0 +1,178 @@
+package org.lunatecs316.frc2014.lib;
+
+/**
+ * Builds a lookup table from measured (x, y) samples. The x axis is split
+ * into evenly spaced bins, and each bin keeps a running weighted linear
+ * regression of the samples near it. Samples count less the farther they
+ * are from the bin, and older samples are slowly forgotten so the table
+ * follows the most recent conditions.
+ * <p>
+ * All of the regression sums are kept in primitive arrays allocated up
+ * front.
+ * @author Domenic Rodriguez
+ */
+public class CalibrationTable {
+    private double m_min;
+    private double m_step;
+    private double m_decay;
+
+    // Weighted sums for each bin, with u = x - bin position
+    private double[] m_sumW;
+    private double[] m_sumU;
+    private double[] m_sumUU;
+    private double[] m_sumY;
+    private double[] m_sumUY;
+
+    // Range of the recent output values in each bin. It is forgotten at the
+    // same rate as the sums, by shrinking toward the bin's mean.
+    private double[] m_minY;
+    private double[] m_maxY;
+
+    /**
+     * Create a new calibration table
+     * @param min the position of the first bin
+     * @param max the position of the last bin
+     * @param step the distance between bins
+     * @param decay how much of the old data each bin keeps when a new sample
+     * is added, from 0 (keep nothing) to 1 (never forget)
+     */
+    public CalibrationTable(double min, double max, double step, double decay) {
+        m_min = min;
+        m_step = step;
+        m_decay = decay;
+
+        int bins = (int) ((max - min) / step + 0.5) + 1;
+        m_sumW = new double[bins];
+        m_sumU = new double[bins];
+        m_sumUU = new double[bins];
+        m_sumY = new double[bins];
+        m_sumUY = new double[bins];
+        m_minY = new double[bins];
+        m_maxY = new double[bins];
+    }
+
+    /**
+     * Add a measured sample. It is added to the bins on either side of x,
+     * weighted by how close it is to each.
+     * @param x the input value
+     * @param y the measured output value
+     * @param weight how much to trust this sample (normally 1)
+     */
+    public void add(double x, double y, double weight) {
+        int first = (int) Math.floor((x - m_min) / m_step);
+        for (int i = first; i <= first + 1; i++) {
+            if (i < 0 || i >= m_sumW.length)
+                continue;
+
+            double u = x - getPosition(i);
+            double w = weight * (1.0 - Math.abs(u) / m_step);
+            if (w <= 0)
+                continue;
+
+            if (m_sumW[i] <= 0) {
+                m_minY[i] = m_maxY[i] = y;
+            } else {
+                double mean = m_sumY[i] / m_sumW[i];
+                m_minY[i] = Math.min(mean - (mean - m_minY[i]) * m_decay, y);
+                m_maxY[i] = Math.max(mean + (m_maxY[i] - mean) * m_decay, y);
+            }
+            m_sumW[i] = m_sumW[i] * m_decay + w;
+            m_sumU[i] = m_sumU[i] * m_decay + w * u;
+            m_sumUU[i] = m_sumUU[i] * m_decay + w * u * u;
+            m_sumY[i] = m_sumY[i] * m_decay + w * y;
+            m_sumUY[i] = m_sumUY[i] * m_decay + w * u * y;
+        }
+    }
+
+    /**
+     * Get the number of bins
+     * @return the number of bins
+     */
+    public int size() {
+        return m_sumW.length;
+    }
+
+    /**
+     * Get the x position of a bin
+     * @param i the bin index
+     * @return the bin position
+     */
+    public double getPosition(int i) {
+        return m_min + m_step * i;
+    }
+
+    /**
+     * Get the total weight of the samples in a bin
+     * @param i the bin index
+     * @return the bin weight
+     */
+    public double getWeight(int i) {
+        return m_sumW[i];
+    }
+
+    /**
+     * Get the fitted output value at a bin's position. If the samples are
+     * spread out enough (a standard deviation of at least a quarter of a
+     * step), this is the value of the bin's regression line at the bin
+     * position; otherwise it is their weighted mean. The value never goes
+     * outside the range of the recent samples, so a line fitted to samples
+     * bunched at one side of the bin can't extrapolate past what was
+     * measured.
+     * @param i the bin index
+     * @return the fitted value, or NaN if the bin has no samples
+     */
+    public double getValue(int i) {
+        double w = m_sumW[i];
+        if (w <= 0)
+            return Double.NaN;
+
+        // det / w^2 is the weighted variance of the sample positions
+        double det = w * m_sumUU[i] - m_sumU[i] * m_sumU[i];
+        double minSpread = m_step / 4.0;
+        double value;
+        if (det < w * w * minSpread * minSpread)
+            value = m_sumY[i] / w;
+        else
+            value = (m_sumUU[i] * m_sumY[i] - m_sumU[i] * m_sumUY[i]) / det;
+        return Math.max(m_minY[i], Math.min(m_maxY[i], value));
+    }
+
+    /**
+     * Build a new lookup table from the calibration. Bins with enough
+     * samples use their fitted value; the rest fall back to the old table.
+     * @param base the table to fall back on
+     * @param minWeight the weight a bin needs before it is used
+     * @return the new table, with one point per bin
+     */
+    public InterpolatingTable refit(InterpolatingTable base, double minWeight) {
+        double[] x = new double[m_sumW.length];
+        double[] y = new double[m_sumW.length];
+        for (int i = 0; i < m_sumW.length; i++) {
+            x[i] = getPosition(i);
+            y[i] = (m_sumW[i] >= minWeight) ? getValue(i) : base.get(x[i]);
+        }
+        return new InterpolatingTable(x, y);
+    }
+
+    /**
+     * Get the number of bins with enough samples to be used
+     * @param minWeight the weight a bin needs before it is used
+     * @return the number of calibrated bins
+     */
+    public int getCalibratedCount(double minWeight) {
+        int count = 0;
+        for (int i = 0; i < m_sumW.length; i++) {
+            if (m_sumW[i] >= minWeight)
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * Throw away all samples
+     */
+    public void reset() {
+        for (int i = 0; i < m_sumW.length; i++)
+            m_sumW[i] = m_sumU[i] = m_sumUU[i] = m_sumY[i] = m_sumUY[i] = m_minY[i] = m_maxY[i] = 0.0;
+    }
+}
@@ -10,7 +10,7 @@ import edu.wpi.first.wpilibj.AccumulatorResult;
 import edu.wpi.first.wpilibj.AnalogChannel;
 import edu.wpi.first.wpilibj.PIDSource;
 import edu.wpi.first.wpilibj.SensorBase;
-import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.Utility;
 import edu.wpi.first.wpilibj.communication.UsageReporting;
 import edu.wpi.first.wpilibj.livewindow.LiveWindow;
 import edu.wpi.first.wpilibj.livewindow.LiveWindowSendable;
@@ -21,9 +21,16 @@ import edu.wpi.first.wpilibj.tables.ITable;
  * Use a rate gyro to return the robots heading relative to a starting position.
  * The Gyro class tracks the robots heading based on the starting position. As the robot
  * rotates the new heading is computed by integrating the rate of rotation returned
- * by the sensor. When the class is instantiated, it does a short calibration routine
+ * by the sensor. When the class is instantiated, it starts a short calibration routine
  * where it samples the gyro while at rest to determine the default offset. This is
  * subtracted from each sample to determine the heading.
+ *
+ * Unlike the WPILib version, calibration doesn't block. Call {@link #updateCalibration()}
+ * every loop to move it along; the gyro reads 0 until {@link #isCalibrated()}.
+ *
+ * The offset also keeps being refined during the match. Call {@link #updateBias(boolean)}
+ * every loop, saying whether the robot is sitting still; while it is, the gyro's output is
+ * folded into a running mean of the offset.
  */
 public class Gyro extends SensorBase implements PIDSource, ISensor, LiveWindowSendable {
 
@@ -31,54 +38,191 @@ public class Gyro extends SensorBase implements PIDSource, ISensor, LiveWindowSe
     static final int kAverageBits = 0;
     static final double kSamplesPerSecond = 50.0;
     static final double kCalibrationSampleTime = 5.0;
+    static final double kSettleTime = 1.0;
     static final double kDefaultVoltsPerDegreePerSecond = 0.007;
+    /** Number of samples the offset estimate remembers */
+    static final double kBiasMaxSamples = kSamplesPerSecond * 30;
+    /** Largest difference from the offset estimate still treated as drift, in degrees per second */
+    static final double kMaxBiasRate = 1.0;
+
+    // Calibration states
+    static final int kStateSettling = 0;
+    static final int kStateSampling = 1;
+    static final int kStateCalibrated = 2;
+    static final int kStateAborted = 3;
+
     AnalogChannel m_analog;
-    double m_voltsPerDegreePerSecond;
+    double m_voltsPerDegreePerSecond = kDefaultVoltsPerDegreePerSecond;
     double m_offset;
     int m_center;
     boolean m_channelAllocated;
-    AccumulatorResult result;
+    AccumulatorResult result = new AccumulatorResult();
+    volatile int m_state = kStateSettling;
+    long m_stateStartTime;
+    boolean m_reported;
+
+    // Offset tracking. Changes to the offset only apply to samples taken after
+    // the change, so the heading doesn't jump when the estimate is updated.
+    BiasEstimator m_bias = new BiasEstimator(kBiasMaxSamples);
+    double m_offsetSum;
+    long m_offsetCount;
+    long m_lastValue;
+    long m_lastCount;
+    boolean m_lastStationary;
 
     /**
-     * Initialize the gyro.
+     * Start calibrating the gyro.
      * Calibrate the gyro by running for a number of samples and computing the center value for this
      * part. Then use the center value as the Accumulator center value for subsequent measurements.
      * It's important to make sure that the robot is not moving while the centering calculations are
      * in progress, this is typically done when the robot is first turned on while it's sitting at
      * rest before the competition starts.
      *
-     * The WPILib implementation has this method private. We change it to public so that the Gyro
-     * can be recalibrated.
+     * The WPILib implementation does this in a private method that blocks for about six seconds.
+     * Here it only starts the calibration; {@link #updateCalibration()} finishes it, and it can be
+     * restarted at any time to recalibrate the gyro.
      */
-    public void initGyro() {
-        result = new AccumulatorResult();
+    public void startCalibration() {
         if (m_analog == null) {
             System.out.println("Null m_analog");
+            return;
         }
-        m_voltsPerDegreePerSecond = kDefaultVoltsPerDegreePerSecond;
         m_analog.setAverageBits(kAverageBits);
         m_analog.setOversampleBits(kOversampleBits);
         double sampleRate = kSamplesPerSecond * (1 << (kAverageBits + kOversampleBits));
         m_analog.getModule().setSampleRate(sampleRate);
 
-        Timer.delay(1.0);
-        m_analog.initAccumulator();
+        // Give the new sample rate time to settle before sampling
+        m_stateStartTime = Utility.getFPGATime();
+        m_state = kStateSettling;
+    }
+
+    /**
+     * Move the calibration along. Call periodically, typically once per loop, but only while the
+     * robot can't move; returns right away once the gyro is calibrated. Restarts calibration from
+     * the beginning if it was aborted.
+     */
+    public void updateCalibration() {
+        if (m_analog == null || m_state == kStateCalibrated)
+            return;
+        if (m_state == kStateAborted) {
+            startCalibration();
+            return;
+        }
+
+        long now = Utility.getFPGATime();
+        double elapsed = (now - m_stateStartTime) * 1e-6;
+        if (m_state == kStateSettling) {
+            if (elapsed >= kSettleTime) {
+                m_analog.initAccumulator();
+                m_stateStartTime = now;
+                m_state = kStateSampling;
+            }
+        } else if (m_state == kStateSampling) {
+            if (elapsed >= kCalibrationSampleTime) {
+                m_analog.getAccumulatorOutput(result);
+
+                m_center = (int) ((double)result.value / (double)result.count + .5);
 
-        Timer.delay(kCalibrationSampleTime);
+                m_offset = ((double)result.value / (double)result.count) - (double)m_center;
+
+                m_analog.setAccumulatorCenter(m_center);
+
+                m_analog.setAccumulatorDeadband(0); ///< TODO: compute / parameterize this
+                m_analog.resetAccumulator();
+                m_bias.reset(m_offset, result.count);
+                m_offsetSum = 0.0;
+                m_offsetCount = 0;
+                m_lastStationary = false;
+
+                if (!m_reported) {
+                    m_reported = true;
+                    UsageReporting.report(UsageReporting.kResourceType_Gyro, m_analog.getChannel(), m_analog.getModuleNumber()-1);
+                    LiveWindow.addSensor("Gyro", m_analog.getModuleNumber(), m_analog.getChannel(), this);
+                }
+                m_state = kStateCalibrated;
+            }
+        }
+    }
+
+    /**
+     * Abort calibration if it is in progress, e.g. because the robot was enabled. The next call to
+     * {@link #updateCalibration()} starts over.
+     * @return true if calibration was in progress
+     */
+    public boolean abortCalibration() {
+        if (m_state == kStateSettling || m_state == kStateSampling) {
+            m_state = kStateAborted;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Refine the offset while the robot is sitting still. Call once per loop. Everything the
+     * gyro measures between two stationary calls is treated as drift, unless it is too fast to
+     * be drift.
+     * @param stationary true if the robot is known not to be turning
+     */
+    public void updateBias(boolean stationary) {
+        if (m_analog == null || m_state != kStateCalibrated || !stationary) {
+            m_lastStationary = false;
+            return;
+        }
 
         m_analog.getAccumulatorOutput(result);
+        if (m_lastStationary && result.count > m_lastCount) {
+            long sum = result.value - m_lastValue;
+            long count = result.count - m_lastCount;
 
-        m_center = (int) ((double)result.value / (double)result.count + .5);
+            // A robot being carried or turned with its wheels off the floor looks stationary to
+            // the drivetrain, but turns far faster than the gyro drifts; ignore those samples
+            double rate = ((double) sum / count - m_offset) * 1e-9 * m_analog.getLSBWeight()
+                    / ((1 << m_analog.getOversampleBits()) * m_voltsPerDegreePerSecond);
+            if (Math.abs(rate) <= kMaxBiasRate) {
+                m_bias.update(sum, count);
 
-        m_offset = ((double)result.value / (double)result.count) - (double)m_center;
+                // Keep the old offset for the samples it was used for
+                m_offsetSum += (result.count - m_offsetCount) * m_offset;
+                m_offsetCount = result.count;
+                m_offset = m_bias.getBias();
+            }
+        }
+        m_lastValue = result.value;
+        m_lastCount = result.count;
+        m_lastStationary = true;
+    }
 
-        m_analog.setAccumulatorCenter(m_center);
+    /**
+     * Get the current offset estimate
+     * @return the offset from the accumulator center, in oversampled ADC counts
+     */
+    public double getOffset() {
+        return m_offset;
+    }
 
-        m_analog.setAccumulatorDeadband(0); ///< TODO: compute / parameterize this
-        m_analog.resetAccumulator();
+    /**
+     * Check if calibration has finished
+     * @return true if the gyro is calibrated and its readings can be used
+     */
+    public boolean isCalibrated() {
+        return m_state == kStateCalibrated;
+    }
 
-        UsageReporting.report(UsageReporting.kResourceType_Gyro, m_analog.getChannel(), m_analog.getModuleNumber()-1);
-        LiveWindow.addSensor("Gyro", m_analog.getModuleNumber(), m_analog.getChannel(), this);
+    /**
+     * Get how far along calibration is
+     * @return the fraction of the calibration time elapsed, from 0 to 1
+     */
+    public double getCalibrationProgress() {
+        int state = m_state;
+        if (state == kStateCalibrated)
+            return 1.0;
+        if (state == kStateAborted)
+            return 0.0;
+        double elapsed = (Utility.getFPGATime() - m_stateStartTime) * 1e-6;
+        if (state == kStateSampling)
+            elapsed += kSettleTime;
+        return Math.min(elapsed / (kSettleTime + kCalibrationSampleTime), 1.0);
     }
 
     /**
@@ -90,7 +234,7 @@ public class Gyro extends SensorBase implements PIDSource, ISensor, LiveWindowSe
     public Gyro(int slot, int channel) {
         m_analog = new AnalogChannel(slot, channel);
         m_channelAllocated = true;
-        initGyro();
+        startCalibration();
     }
 
     /**
@@ -103,7 +247,7 @@ public class Gyro extends SensorBase implements PIDSource, ISensor, LiveWindowSe
     public Gyro(int channel) {
         m_analog = new AnalogChannel(channel);
         m_channelAllocated = true;
-        initGyro();
+        startCalibration();
     }
 
     /**
@@ -118,7 +262,7 @@ public class Gyro extends SensorBase implements PIDSource, ISensor, LiveWindowSe
             System.err.println("Analog channel supplied to Gyro constructor is null");
         } else {
             m_channelAllocated = false;
-            initGyro();
+            startCalibration();
         }
     }
 
@@ -130,6 +274,9 @@ public class Gyro extends SensorBase implements PIDSource, ISensor, LiveWindowSe
     public void reset() {
         if (m_analog != null) {
             m_analog.resetAccumulator();
+            m_offsetSum = 0.0;
+            m_offsetCount = 0;
+            m_lastStationary = false;
         }
     }
 
@@ -152,15 +299,15 @@ public class Gyro extends SensorBase implements PIDSource, ISensor, LiveWindowSe
      * want to see a discontinuity in the gyro output as it sweeps past 0 on the second time around.
      *
      * @return the current heading of the robot in degrees. This heading is based on integration
-     * of the returned rate from the gyro.
+     * of the returned rate from the gyro. Always 0 while the gyro is calibrating.
      */
     public double getAngle() {
-        if (m_analog == null) {
+        if (m_analog == null || m_state != kStateCalibrated) {
             return 0.0;
         } else {
             m_analog.getAccumulatorOutput(result);
 
-            long value = result.value - (long) (result.count * m_offset);
+            long value = result.value - (long) (m_offsetSum + (result.count - m_offsetCount) * m_offset);
 
             double scaledValue = value * 1e-9 * m_analog.getLSBWeight() * (1 << m_analog.getAverageBits()) /
                     (m_analog.getModule().getSampleRate() * m_voltsPerDegreePerSecond);
@@ -174,10 +321,10 @@ public class Gyro extends SensorBase implements PIDSource, ISensor, LiveWindowSe
      *
      * The rate is based on the most recent reading of the gyro analog value
      *
-     * @return the current rate in degrees per second
+     * @return the current rate in degrees per second. Always 0 while the gyro is calibrating.
      */
     public double getRate() {
-        if(m_analog == null) {
+        if(m_analog == null || m_state != kStateCalibrated) {
             return 0.0;
         } else {
             return (m_analog.getAverageValue() - ((double)m_center + m_offset)) * 1e-9 * m_analog.getLSBWeight()
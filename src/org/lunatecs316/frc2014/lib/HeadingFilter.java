@@ -0,0 +1,125 @@
+package org.lunatecs316.frc2014.lib;
+
+/**
+ * Complementary filter that combines the gyro with the drive encoders to
+ * estimate the robot's heading. The gyro is trusted for quick changes, but
+ * it drifts; the difference between the left and right wheels doesn't
+ * drift, but is thrown off by the wheels scrubbing sideways in a turn.
+ * <p>
+ * The filter low-passes the difference between the gyro's turn rate and
+ * the encoders' turn rate, and subtracts it from the gyro. The heading
+ * follows the gyro at high frequencies and the encoders at low
+ * frequencies. The difference is only tracked while the encoders say the
+ * robot is barely turning and moving slowly, so neither scrubbing nor a
+ * small difference in wheel size gets in.
+ * <p>
+ * Headings are in degrees, clockwise, matching {@link Odometry}.
+ * @author Domenic Rodriguez
+ */
+public class HeadingFilter {
+    private double m_trackWidth;
+    private double m_gyroWeight;
+    private double m_maxTurnRate;
+    private double m_maxSpeed;
+    private double m_heading;
+    private double m_drift;
+
+    /**
+     * Create a new heading filter
+     * @param trackWidth the distance between the left and right wheels
+     * @param gyroWeight how much to trust the gyro each update, from 0 to 1
+     * @param maxTurnRate the fastest turn, in degrees per second, at which
+     *                    the encoders are still used
+     * @param maxSpeed the fastest forward speed, in inches per second (same
+     *                 units as the track width), at which the encoders are
+     *                 still used
+     */
+    public HeadingFilter(double trackWidth, double gyroWeight, double maxTurnRate, double maxSpeed) {
+        m_trackWidth = trackWidth;
+        m_gyroWeight = gyroWeight;
+        m_maxTurnRate = maxTurnRate;
+        m_maxSpeed = maxSpeed;
+    }
+
+    /**
+     * Change the distance between the wheels
+     * @param trackWidth the distance between the left and right wheels
+     */
+    public void setTrackWidth(double trackWidth) {
+        m_trackWidth = trackWidth;
+    }
+
+    /**
+     * Change the blend between the gyro and the encoders. A weight of 1 uses
+     * only the gyro, and 0 uses only the encoders while driving straight.
+     * For a weight w updated every T seconds, the encoders correct the gyro
+     * with a time constant of about T * w / (1 - w).
+     * @param gyroWeight how much to trust the gyro each update, from 0 to 1
+     */
+    public void setGyroWeight(double gyroWeight) {
+        m_gyroWeight = gyroWeight;
+    }
+
+    /**
+     * Change the fastest turn at which the encoders are used
+     * @param maxTurnRate the turn rate in degrees per second
+     */
+    public void setMaxTurnRate(double maxTurnRate) {
+        m_maxTurnRate = maxTurnRate;
+    }
+
+    /**
+     * Change the fastest forward speed at which the encoders are used
+     * @param maxSpeed the speed in inches per second (same units as the
+     *                 track width)
+     */
+    public void setMaxSpeed(double maxSpeed) {
+        m_maxSpeed = maxSpeed;
+    }
+
+    /**
+     * Set the current heading. The drift estimate is kept.
+     * @param heading the heading in degrees
+     */
+    public void reset(double heading) {
+        m_heading = heading;
+    }
+
+    /**
+     * Update the heading with how far the robot moved since the last update
+     * @param gyroChange the change in gyro angle, in degrees
+     * @param leftChange the distance the left wheels moved
+     * @param rightChange the distance the right wheels moved, in the same
+     *                    units as the track width
+     * @param dt the time since the last update, in seconds
+     * @return the new heading
+     */
+    public double update(double gyroChange, double leftChange, double rightChange, double dt) {
+        if (dt <= 0.0)
+            return m_heading;
+
+        double encoderRate = Math.toDegrees((leftChange - rightChange) / m_trackWidth) / dt;
+        double speed = (leftChange + rightChange) / 2.0 / dt;
+        if (Math.abs(encoderRate) < m_maxTurnRate && Math.abs(speed) < m_maxSpeed)
+            m_drift += (1.0 - m_gyroWeight) * (gyroChange / dt - encoderRate - m_drift);
+
+        m_heading += gyroChange - m_drift * dt;
+        return m_heading;
+    }
+
+    /**
+     * Get the fused heading
+     * @return the heading in degrees
+     */
+    public double getHeading() {
+        return m_heading;
+    }
+
+    /**
+     * Get the estimated difference between the gyro and encoder turn rates
+     * @return the gyro drift in degrees per second
+     */
+    public double getDrift() {
+        return m_drift;
+    }
+}
@@ -0,0 +1,137 @@
+package org.lunatecs316.frc2014.lib;
+
+/**
+ * Fixed-bucket histogram for keeping track of how long things take over a
+ * match. All of the storage is allocated up front, so recording a value is
+ * cheap enough to do from any loop. Values are safe to record from one
+ * thread and read from another.
+ * @author Domenic Rodriguez
+ */
+public class Histogram {
+    private String m_name;
+    private double m_min;
+    private double m_bucketWidth;
+    private int[] m_buckets;
+    private int m_count;
+    private double m_sum;
+    private double m_max;
+    private double m_last;
+
+    /**
+     * Create a new histogram. Values outside of the range are counted in
+     * the first or last bucket; the max is always tracked exactly.
+     * @param name the name of the value being measured
+     * @param min the smallest expected value
+     * @param max the largest expected value
+     * @param buckets the number of buckets to split the range into
+     */
+    public Histogram(String name, double min, double max, int buckets) {
+        m_name = name;
+        m_min = min;
+        m_bucketWidth = (max - min) / buckets;
+        m_buckets = new int[buckets];
+    }
+
+    /**
+     * Record a new value
+     * @param value the value
+     */
+    public synchronized void record(double value) {
+        int bucket = (int) ((value - m_min) / m_bucketWidth);
+        if (bucket < 0)
+            bucket = 0;
+        else if (bucket >= m_buckets.length)
+            bucket = m_buckets.length - 1;
+        m_buckets[bucket]++;
+
+        if (m_count == 0 || value > m_max)
+            m_max = value;
+        m_count++;
+        m_sum += value;
+        m_last = value;
+    }
+
+    /**
+     * Estimate a percentile of the recorded values, interpolating within
+     * the bucket it falls in
+     * @param fraction the percentile as a fraction (0.5 for the median)
+     * @return the estimated value, or 0 if nothing has been recorded
+     */
+    public synchronized double getPercentile(double fraction) {
+        if (m_count == 0)
+            return 0.0;
+
+        double target = fraction * m_count;
+        int seen = 0;
+        for (int i = 0; i < m_buckets.length; i++) {
+            if (m_buckets[i] > 0 && seen + m_buckets[i] >= target) {
+                double value = m_min + m_bucketWidth * (i + (target - seen) / m_buckets[i]);
+                return Math.min(value, m_max);
+            }
+            seen += m_buckets[i];
+        }
+        return m_max;
+    }
+
+    /**
+     * Get the largest value recorded
+     * @return the max value, or 0 if nothing has been recorded
+     */
+    public synchronized double getMax() {
+        return m_max;
+    }
+
+    /**
+     * Get the average of the recorded values
+     * @return the mean, or 0 if nothing has been recorded
+     */
+    public synchronized double getMean() {
+        return (m_count == 0) ? 0.0 : m_sum / m_count;
+    }
+
+    /**
+     * Get the most recently recorded value
+     * @return the last value
+     */
+    public synchronized double getLast() {
+        return m_last;
+    }
+
+    /**
+     * Get the number of values recorded
+     * @return the count
+     */
+    public synchronized int getCount() {
+        return m_count;
+    }
+
+    /**
+     * Get the name of the histogram
+     * @return the name
+     */
+    public String getName() {
+        return m_name;
+    }
+
+    /**
+     * Clear all recorded values
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < m_buckets.length; i++)
+            m_buckets[i] = 0;
+        m_count = 0;
+        m_sum = m_max = m_last = 0.0;
+    }
+
+    /**
+     * Write a summary of the histogram to a log
+     * @param log the log channel to write to
+     * @param context the context for the log message
+     */
+    public void log(LogChannel log, String context) {
+        if (getCount() == 0)
+            return;
+        log.info(context, m_name + ": {} samples", getCount());
+        log.info(context, m_name + ": p50 {} p90 {} max {}", getPercentile(0.5), getPercentile(0.9), getMax());
+    }
+}
@@ -0,0 +1,180 @@
+package org.lunatecs316.frc2014.lib;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+
+/**
+ * An immutable table of (x, y) points with linear interpolation between
+ * them. Points are kept in parallel primitive arrays sorted by x, and
+ * lookups use a binary search, so large tables are still cheap to use every
+ * loop and no objects are allocated.
+ * <p>
+ * Since the table never changes once created, a new table can be built on
+ * any thread and swapped in by assigning it to a volatile field.
+ * @author Domenic Rodriguez
+ */
+public final class InterpolatingTable {
+    private final double[] m_x;
+    private final double[] m_y;
+
+    /**
+     * Create a new table. The arrays are copied.
+     * @param x the input values, in strictly increasing order
+     * @param y the output value for each input
+     * @throws IllegalArgumentException if the arrays are empty, differ in
+     * length, or x is not increasing
+     */
+    public InterpolatingTable(double[] x, double[] y) {
+        this(x, y, x.length);
+    }
+
+    /**
+     * Create a new table from the first count points of the arrays. The
+     * arrays are copied.
+     * @param x the input values, in strictly increasing order
+     * @param y the output value for each input
+     * @param count the number of points to use
+     * @throws IllegalArgumentException if there are no points, the arrays
+     * are too short, or x is not increasing
+     */
+    public InterpolatingTable(double[] x, double[] y, int count) {
+        if (count < 1 || x.length < count || y.length < count)
+            throw new IllegalArgumentException("Table needs at least one point and matching arrays");
+        for (int i = 1; i < count; i++) {
+            if (!(x[i] > x[i - 1]))
+                throw new IllegalArgumentException("Table inputs must be increasing (point " + i + ")");
+        }
+        m_x = new double[count];
+        m_y = new double[count];
+        System.arraycopy(x, 0, m_x, 0, count);
+        System.arraycopy(y, 0, m_y, 0, count);
+    }
+
+    /**
+     * Look up a value. Inputs outside of the table are clamped to the first
+     * or last point.
+     * @param x the input value
+     * @return the interpolated output value
+     */
+    public double get(double x) {
+        int last = m_x.length - 1;
+        if (x <= m_x[0])
+            return m_y[0];
+        if (x >= m_x[last])
+            return m_y[last];
+
+        // Find the last point with m_x[low] <= x
+        int low = 0;
+        int high = last;
+        while (high - low > 1) {
+            int mid = (low + high) >>> 1;
+            if (m_x[mid] <= x)
+                low = mid;
+            else
+                high = mid;
+        }
+
+        double m = (m_y[high] - m_y[low]) / (m_x[high] - m_x[low]);
+        return m_y[low] + m * (x - m_x[low]);
+    }
+
+    /**
+     * Get the number of points in the table
+     * @return the number of points
+     */
+    public int size() {
+        return m_x.length;
+    }
+
+    /**
+     * Get the input value of a point
+     * @param i the index of the point
+     * @return the input value
+     */
+    public double getX(int i) {
+        return m_x[i];
+    }
+
+    /**
+     * Get the output value of a point
+     * @param i the index of the point
+     * @return the output value
+     */
+    public double getY(int i) {
+        return m_y[i];
+    }
+
+    /**
+     * Write the table in the format read by {@link #parse(Reader)}
+     * @param out the stream to write to
+     */
+    public void write(PrintStream out) {
+        for (int i = 0; i < m_x.length; i++)
+            out.println(m_x[i] + " " + m_y[i]);
+    }
+
+    /**
+     * Read a table from a text file. Each line holds one point as an input
+     * and output value separated by a comma or whitespace. Blank lines and
+     * lines starting with '#' are ignored.
+     * @param in the file to read
+     * @return the new table
+     * @throws IOException if the file could not be read or is invalid
+     */
+    public static InterpolatingTable parse(Reader in) throws IOException {
+        double[] x = new double[32];
+        double[] y = new double[32];
+        int count = 0;
+        int lineNumber = 0;
+        StringBuffer line = new StringBuffer();
+
+        int c;
+        do {
+            c = in.read();
+            if (c != '\n' && c != -1) {
+                line.append((char) c);
+                continue;
+            }
+            lineNumber++;
+
+            String text = line.toString().trim();
+            line.setLength(0);
+            if (text.length() == 0 || text.startsWith("#"))
+                continue;
+
+            // Split at the first separator
+            int split = 0;
+            while (split < text.length() && text.charAt(split) != ',' &&
+                    text.charAt(split) != ' ' && text.charAt(split) != '\t')
+                split++;
+            if (split == text.length())
+                throw new IOException("Line " + lineNumber + ": expected two values");
+
+            if (count == x.length) {
+                double[] newX = new double[count * 2];
+                double[] newY = new double[count * 2];
+                System.arraycopy(x, 0, newX, 0, count);
+                System.arraycopy(y, 0, newY, 0, count);
+                x = newX;
+                y = newY;
+            }
+            try {
+                x[count] = Double.parseDouble(text.substring(0, split).trim());
+                String value = text.substring(split + 1).trim();
+                if (value.startsWith(","))
+                    value = value.substring(1).trim();
+                y[count] = Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                throw new IOException("Line " + lineNumber + ": invalid number");
+            }
+            count++;
+        } while (c != -1);
+
+        try {
+            return new InterpolatingTable(x, y, count);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package org.lunatecs316.frc2014.lib;
 
+import edu.wpi.first.wpilibj.PIDSource;
+
 /**
  * PID Controller that can run in an iterative loop
  * @author Domenic Rodriguez
@@ -51,6 +53,16 @@ public final class IterativePIDController {
         return run(sp, pv, -1.0, 1.0);
     }
 
+    /**
+     * Run one iteration of the PID controller
+     * @param sp setpoint (target value)
+     * @param source source of the process variable
+     * @return output of the PID algorithm
+     */
+    public double run(double sp, PIDSource source) {
+        return run(sp, source.pidGet(), -1.0, 1.0);
+    }
+
     /**
      * Run one iteration of the PID controller
      * @param sp setpoint (target value)
@@ -60,14 +72,24 @@ public final class IterativePIDController {
      * @return output of the PID algorithm
      */
     public double run(double sp, double pv, double min, double max) {
-        // Get the time since the last call
+        // Get the time since the last call, in milliseconds
         double dt = deltaTimer.getValue();
 
-        // Calculate output
+        // Calculate output. The timer only counts whole milliseconds, so the
+        // first call after a reset can see dt = 0; skip I and D then.
         double error = sp - pv;
-        integral += error * dt;
-        double derivative = (error - prev_error) / dt;
-        double output = kP * error + kI * integral + kD * derivative;
+        double output = kP * error;
+        if (dt > 0) {
+            integral += error * dt;
+
+            // Don't let the integral wind up past what the output can use
+            if (kI != 0) {
+                double limit = Math.max(Math.abs(min), Math.abs(max)) / Math.abs(kI);
+                integral = Math.max(-limit, Math.min(limit, integral));
+            }
+            double derivative = (error - prev_error) / dt;
+            output += kI * integral + kD * derivative;
+        }
         
         // Check against limits
         if (output > max)
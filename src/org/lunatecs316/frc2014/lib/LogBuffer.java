@@ -0,0 +1,154 @@
+package org.lunatecs316.frc2014.lib;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Fixed-capacity ring buffer of log records. All of the storage is allocated
+ * when the buffer is created; once it fills up the oldest records are
+ * overwritten and counted as dropped.
+ * @author Domenic Rodriguez
+ */
+public class LogBuffer {
+    // Each record is stored as a two byte length followed by the record data
+    private static final int kHeaderSize = 2;
+    public static final int kMaxRecordLength = 0xFFFF;
+
+    private byte[] m_data;
+    private int m_head;
+    private int m_tail;
+    private int m_size;
+    private int m_records;
+    private int m_dropped;
+
+    /**
+     * Create a new buffer
+     * @param capacity the size of the buffer in bytes
+     */
+    public LogBuffer(int capacity) {
+        m_data = new byte[capacity];
+        clear();
+    }
+
+    /**
+     * Remove all records from the buffer
+     */
+    public final void clear() {
+        m_head = m_tail = m_size = m_records = 0;
+    }
+
+    /**
+     * Add a record to the buffer, overwriting the oldest records if there
+     * isn't enough free space
+     * @param record array holding the record data
+     * @param offset start of the record within the array
+     * @param length length of the record
+     * @return false if the record could not fit in the buffer at all
+     */
+    public boolean write(byte[] record, int offset, int length) {
+        int total = length + kHeaderSize;
+        if (length > kMaxRecordLength || total > m_data.length) {
+            m_dropped++;
+            return false;
+        }
+
+        // Make room by dropping the oldest records
+        while (m_data.length - m_size < total) {
+            int oldest = recordLength(m_tail);
+            m_tail = (m_tail + oldest + kHeaderSize) % m_data.length;
+            m_size -= oldest + kHeaderSize;
+            m_records--;
+            m_dropped++;
+        }
+
+        put((byte) (length >> 8));
+        put((byte) length);
+        for (int i = 0; i < length; i++)
+            put(record[offset + i]);
+        m_records++;
+        return true;
+    }
+
+    /**
+     * Write the contents of the buffer to a stream and empty the buffer
+     * @param out the stream to write to
+     * @return the number of bytes written
+     * @throws IOException if the stream could not be written
+     */
+    public int drain(OutputStream out) throws IOException {
+        int written = 0;
+        while (m_records > 0) {
+            int length = recordLength(m_tail);
+            int start = (m_tail + kHeaderSize) % m_data.length;
+
+            // The record may wrap around the end of the array
+            int first = Math.min(length, m_data.length - start);
+            out.write(m_data, start, first);
+            if (first < length)
+                out.write(m_data, 0, length - first);
+
+            m_tail = (start + length) % m_data.length;
+            m_size -= length + kHeaderSize;
+            m_records--;
+            written += length;
+        }
+        return written;
+    }
+
+    /**
+     * Get the number of records in the buffer
+     * @return the number of records
+     */
+    public int getRecordCount() {
+        return m_records;
+    }
+
+    /**
+     * Get the number of bytes currently used
+     * @return bytes used, including record headers
+     */
+    public int getSize() {
+        return m_size;
+    }
+
+    /**
+     * Get the total capacity of the buffer
+     * @return the capacity in bytes
+     */
+    public int getCapacity() {
+        return m_data.length;
+    }
+
+    /**
+     * Get the number of records that have been overwritten or rejected
+     * @return the number of dropped records
+     */
+    public int getDroppedCount() {
+        return m_dropped;
+    }
+
+    /**
+     * Reset the dropped record counter
+     */
+    public void resetDroppedCount() {
+        m_dropped = 0;
+    }
+
+    /**
+     * Read the length of the record starting at the given index
+     */
+    private int recordLength(int index) {
+        int high = m_data[index] & 0xFF;
+        int low = m_data[(index + 1) % m_data.length] & 0xFF;
+        return (high << 8) | low;
+    }
+
+    /**
+     * Append a single byte at the head of the buffer
+     */
+    private void put(byte b) {
+        m_data[m_head] = b;
+        m_head = (m_head + 1) % m_data.length;
+        m_size++;
+    }
+}
@@ -0,0 +1,493 @@
+package org.lunatecs316.frc2014.lib;
+
+import java.io.PrintStream;
+import org.lunatecs316.frc2014.lib.Logger.Level;
+
+/**
+ * A named logging channel with its own level, buffers, and output file.
+ * Channels don't share any state on the logging path, so a busy channel
+ * never slows down the others.
+ * @author Domenic Rodriguez
+ */
+public class LogChannel {
+    /** Longest single log record; anything past this is truncated */
+    public static final int kMaxRecordLength = 256;
+
+    /** Records are streamed to flash whenever the writer gets to them */
+    public static final int kFlushPeriodic = 0;
+    /** Every record is flushed to flash right away. Use for rare events. */
+    public static final int kFlushImmediate = 1;
+    /** Shortest time between immediate flushes, in milliseconds. Records in between go out on the writer's next pass. */
+    public static final long kMinImmediatePeriod = 100;
+
+    // Number of decimal places used when formatting doubles
+    private static final int kPrecision = 4;
+
+    private static final byte kArgNone = 0;
+    private static final byte kArgDouble = 1;
+    private static final byte kArgInt = 2;
+    private static final byte kArgBoolean = 3;
+
+    private String m_name;
+    private int m_level;
+    private boolean m_toConsole;
+    private boolean m_toFile;
+    private int m_flushPolicy;
+    private LogFile m_file;
+    private long m_lastSync;
+    private byte[] record;
+    private int recordLength;
+
+    /**
+     * Create a new channel
+     * @param name the name of the channel, also used for the log file
+     * @param bufferSize the size of each of the channel's two buffers
+     * @param level the initial detail level
+     * @param toConsole whether messages are printed to the console
+     * @param flushPolicy kFlushPeriodic or kFlushImmediate
+     */
+    public LogChannel(String name, int bufferSize, Level level, boolean toConsole, int flushPolicy) {
+        m_name = name;
+        m_level = level.getValue();
+        m_toConsole = toConsole;
+        m_toFile = true;
+        m_flushPolicy = flushPolicy;
+        m_file = new LogFile(name, ".log", bufferSize);
+        record = new byte[kMaxRecordLength];
+    }
+
+    /**
+     * Set the detail level of the channel
+     * @param l the detail level
+     */
+    public void setLevel(Level l) {
+        m_level = l.getValue();
+    }
+
+    /**
+     * Check if messages of the given level will be output anywhere
+     * @param level the level to check
+     * @return true if a message at this level would be logged
+     */
+    public boolean isEnabled(Level level) {
+        return m_level >= level.getValue() && (m_toConsole || m_toFile);
+    }
+
+    /**
+     * Enable or disable console output for this channel
+     * @param enabled
+     */
+    public void enableConsoleLogging(boolean enabled) {
+        m_toConsole = enabled;
+    }
+
+    /**
+     * Enable or disable file output for this channel
+     * @param enabled
+     */
+    public void enableFileLogging(boolean enabled) {
+        m_toFile = enabled;
+    }
+
+    /**
+     * Get the name of the channel
+     * @return the channel name
+     */
+    public String getName() {
+        return m_name;
+    }
+
+    /**
+     * Get the number of records lost because the buffers were full
+     * @return the number of dropped records
+     */
+    public int getDroppedCount() {
+        return m_file.getDroppedCount();
+    }
+
+    /**
+     * Write all of this channel's buffered records to flash
+     */
+    public void sync() {
+        m_file.sync();
+    }
+
+    /**
+     * Log an informative message
+     * @param context contextual information on the location of the program
+     * @param message the message to print
+     */
+    public void info(String context, String message) {
+        log(Level.INFO, context, message, 0, kArgNone, 0, 0, 0);
+    }
+
+    /**
+     * Log an informative message, substituting a value into a format key. The message
+     * is only formatted if it will actually be output.
+     * @param context contextual information on the location of the program
+     * @param key constant message text, with {} marking where the value goes
+     * @param a the value
+     */
+    public void info(String context, String key, double a) {
+        log(Level.INFO, context, key, 1, kArgDouble, a, 0, 0);
+    }
+
+    /**
+     * @see #info(String, String, double)
+     */
+    public void info(String context, String key, int a) {
+        log(Level.INFO, context, key, 1, kArgInt, a, 0, 0);
+    }
+
+    /**
+     * @see #info(String, String, double)
+     */
+    public void info(String context, String key, boolean a) {
+        log(Level.INFO, context, key, 1, kArgBoolean, a ? 1 : 0, 0, 0);
+    }
+
+    /**
+     * @see #info(String, String, double)
+     */
+    public void info(String context, String key, double a, double b) {
+        log(Level.INFO, context, key, 2, kArgDouble, a, b, 0);
+    }
+
+    /**
+     * @see #info(String, String, double)
+     */
+    public void info(String context, String key, double a, double b, double c) {
+        log(Level.INFO, context, key, 3, kArgDouble, a, b, c);
+    }
+
+    /**
+     * Log a warning message
+     * @param context contextual information on the location of the program
+     * @param message the message to print
+     */
+    public void warning(String context, String message) {
+        log(Level.WARNING, context, message, 0, kArgNone, 0, 0, 0);
+    }
+
+    /**
+     * Log a warning message, substituting a value into a format key. The message
+     * is only formatted if it will actually be output.
+     * @param context contextual information on the location of the program
+     * @param key constant message text, with {} marking where the value goes
+     * @param a the value
+     */
+    public void warning(String context, String key, double a) {
+        log(Level.WARNING, context, key, 1, kArgDouble, a, 0, 0);
+    }
+
+    /**
+     * @see #warning(String, String, double)
+     */
+    public void warning(String context, String key, int a) {
+        log(Level.WARNING, context, key, 1, kArgInt, a, 0, 0);
+    }
+
+    /**
+     * @see #warning(String, String, double)
+     */
+    public void warning(String context, String key, boolean a) {
+        log(Level.WARNING, context, key, 1, kArgBoolean, a ? 1 : 0, 0, 0);
+    }
+
+    /**
+     * @see #warning(String, String, double)
+     */
+    public void warning(String context, String key, double a, double b) {
+        log(Level.WARNING, context, key, 2, kArgDouble, a, b, 0);
+    }
+
+    /**
+     * @see #warning(String, String, double)
+     */
+    public void warning(String context, String key, double a, double b, double c) {
+        log(Level.WARNING, context, key, 3, kArgDouble, a, b, c);
+    }
+
+    /**
+     * Log an error message
+     * @param context contextual information on the location of the program
+     * @param message the message to print
+     */
+    public void error(String context, String message) {
+        log(Level.ERROR, context, message, 0, kArgNone, 0, 0, 0);
+    }
+
+    /**
+     * Log an error message, substituting a value into a format key. The message
+     * is only formatted if it will actually be output.
+     * @param context contextual information on the location of the program
+     * @param key constant message text, with {} marking where the value goes
+     * @param a the value
+     */
+    public void error(String context, String key, double a) {
+        log(Level.ERROR, context, key, 1, kArgDouble, a, 0, 0);
+    }
+
+    /**
+     * @see #error(String, String, double)
+     */
+    public void error(String context, String key, int a) {
+        log(Level.ERROR, context, key, 1, kArgInt, a, 0, 0);
+    }
+
+    /**
+     * @see #error(String, String, double)
+     */
+    public void error(String context, String key, boolean a) {
+        log(Level.ERROR, context, key, 1, kArgBoolean, a ? 1 : 0, 0, 0);
+    }
+
+    /**
+     * @see #error(String, String, double)
+     */
+    public void error(String context, String key, double a, double b) {
+        log(Level.ERROR, context, key, 2, kArgDouble, a, b, 0);
+    }
+
+    /**
+     * @see #error(String, String, double)
+     */
+    public void error(String context, String key, double a, double b, double c) {
+        log(Level.ERROR, context, key, 3, kArgDouble, a, b, c);
+    }
+
+    /**
+     * Log a debugging message
+     * @param context contextual information on the location of the program
+     * @param message the message to print
+     */
+    public void debug(String context, String message) {
+        if (Logger.kDebug)
+            log(Level.DEBUG, context, message, 0, kArgNone, 0, 0, 0);
+    }
+
+    /**
+     * Log a debugging message, substituting a value into a format key. The message
+     * is only formatted if it will actually be output.
+     * @param context contextual information on the location of the program
+     * @param key constant message text, with {} marking where the value goes
+     * @param a the value
+     */
+    public void debug(String context, String key, double a) {
+        if (Logger.kDebug)
+            log(Level.DEBUG, context, key, 1, kArgDouble, a, 0, 0);
+    }
+
+    /**
+     * @see #debug(String, String, double)
+     */
+    public void debug(String context, String key, int a) {
+        if (Logger.kDebug)
+            log(Level.DEBUG, context, key, 1, kArgInt, a, 0, 0);
+    }
+
+    /**
+     * @see #debug(String, String, double)
+     */
+    public void debug(String context, String key, boolean a) {
+        if (Logger.kDebug)
+            log(Level.DEBUG, context, key, 1, kArgBoolean, a ? 1 : 0, 0, 0);
+    }
+
+    /**
+     * @see #debug(String, String, double)
+     */
+    public void debug(String context, String key, double a, double b) {
+        if (Logger.kDebug)
+            log(Level.DEBUG, context, key, 2, kArgDouble, a, b, 0);
+    }
+
+    /**
+     * @see #debug(String, String, double)
+     */
+    public void debug(String context, String key, double a, double b, double c) {
+        if (Logger.kDebug)
+            log(Level.DEBUG, context, key, 3, kArgDouble, a, b, c);
+    }
+
+    /**
+     * Write an already formatted record to this channel's file
+     */
+    void writeRecord(byte[] data, int length) {
+        m_file.write(data, 0, length);
+        if (m_flushPolicy == kFlushImmediate) {
+            long now = System.currentTimeMillis();
+            if (now - m_lastSync >= kMinImmediatePeriod) {
+                m_lastSync = now;
+                m_file.sync();
+            } else {
+                m_file.requestSync();
+            }
+        }
+    }
+
+    /**
+     * Perform the actual logging operation. The record is built in place in
+     * a preallocated buffer, so no objects are created here.
+     * @param level the severity of the message
+     * @param context contextual information on the location of the program
+     * @param message the message to print, or a format key if argc > 0
+     * @param argc the number of arguments to substitute into the message
+     * @param type the type of the arguments
+     * @param a the first argument
+     * @param b the second argument
+     * @param c the third argument
+     */
+    private synchronized void log(Level level, String context, String message,
+                                  int argc, byte type, double a, double b, double c) {
+        if (!isEnabled(level))
+            return;
+
+        // Format: <time> [<context>] <LEVEL>: <message>
+        recordLength = 0;
+        append(System.currentTimeMillis() - Logger.getStartTime());
+        append(" [");
+        append(context);
+        append("] ");
+        append(level.toString());
+        append(": ");
+        if (argc == 0)
+            append(message);
+        else
+            format(message, argc, type, a, b, c);
+        if (recordLength == kMaxRecordLength)
+            recordLength--;
+        record[recordLength++] = '\n';
+
+        boolean fault = (level == Level.WARNING || level == Level.ERROR);
+        if (m_toConsole) {
+            PrintStream console = fault ? System.err : System.out;
+            console.write(record, 0, recordLength);
+        }
+
+        if (m_toFile)
+            writeRecord(record, recordLength);
+
+        // Keep a copy of every problem in the faults channel
+        if (fault && this != Logger.Faults && Logger.Faults != null)
+            Logger.Faults.writeRecord(record, recordLength);
+    }
+
+    /**
+     * Append a message to the current record, replacing each {} in the key
+     * with the next argument. Leftover arguments are added at the end.
+     */
+    private void format(String key, int argc, byte type, double a, double b, double c) {
+        int next = 0;
+        int length = key.length();
+        for (int i = 0; i < length && recordLength < kMaxRecordLength; i++) {
+            char ch = key.charAt(i);
+            if (ch == '{' && i + 1 < length && key.charAt(i + 1) == '}' && next < argc) {
+                appendArg(type, (next == 0) ? a : (next == 1) ? b : c);
+                next++;
+                i++;
+            } else {
+                record[recordLength++] = (ch < 0x80) ? (byte) ch : (byte) '?';
+            }
+        }
+        for (; next < argc; next++) {
+            append(" ");
+            appendArg(type, (next == 0) ? a : (next == 1) ? b : c);
+        }
+    }
+
+    /**
+     * Append a single argument to the current record
+     */
+    private void appendArg(byte type, double value) {
+        switch (type) {
+            case kArgInt:
+                append((long) value);
+                break;
+            case kArgBoolean:
+                append((value != 0) ? "true" : "false");
+                break;
+            default:
+                append(value);
+                break;
+        }
+    }
+
+    /**
+     * Append a string to the current record
+     * @param str the string to add
+     */
+    private void append(String str) {
+        if (str == null)
+            str = "null";
+        int length = Math.min(str.length(), kMaxRecordLength - recordLength);
+        for (int i = 0; i < length; i++) {
+            char c = str.charAt(i);
+            record[recordLength++] = (c < 0x80) ? (byte) c : (byte) '?';
+        }
+    }
+
+    /**
+     * Append the decimal representation of a number to the current record,
+     * rounded to kPrecision decimal places
+     * @param value the number to add
+     */
+    private void append(double value) {
+        if (Double.isNaN(value)) {
+            append("NaN");
+            return;
+        }
+        if (value < 0) {
+            append("-");
+            value = -value;
+        }
+        if (Double.isInfinite(value)) {
+            append("Infinity");
+            return;
+        }
+
+        long scale = 1;
+        for (int i = 0; i < kPrecision; i++)
+            scale *= 10;
+        if (value * scale >= Long.MAX_VALUE) {
+            append((long) value);
+            return;
+        }
+        long scaled = (long) (value * scale + 0.5);
+        append(scaled / scale);
+        append(".");
+
+        // Write every decimal place, then trim trailing zeros (keeping one)
+        long fraction = scaled % scale;
+        int start = recordLength;
+        for (long div = scale / 10; div > 0 && recordLength < kMaxRecordLength; div /= 10)
+            record[recordLength++] = (byte) ('0' + (fraction / div) % 10);
+        while (recordLength > start + 1 && record[recordLength - 1] == '0')
+            recordLength--;
+    }
+
+    /**
+     * Append the decimal representation of a number to the current record
+     * @param value the number to add
+     */
+    private void append(long value) {
+        if (value < 0) {
+            if (recordLength < kMaxRecordLength)
+                record[recordLength++] = '-';
+            value = -value;
+        }
+
+        // Count the digits so they can be written front to back
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10)
+            digits++;
+        if (recordLength + digits > kMaxRecordLength)
+            return;
+
+        for (int i = digits - 1; i >= 0; i--) {
+            record[recordLength + i] = (byte) ('0' + (value % 10));
+            value /= 10;
+        }
+        recordLength += digits;
+    }
+}
@@ -0,0 +1,231 @@
+package org.lunatecs316.frc2014.lib;
+
+import com.sun.squawk.microedition.io.FileConnection;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import javax.microedition.io.Connector;
+
+/**
+ * A double-buffered log file on the cRIO flash. Records are added to the
+ * front buffer by the robot loop; when it fills up (or the writer asks for
+ * it) the buffers are swapped and the {@link LogWriter} thread streams the
+ * back buffer to the file. The robot loop never waits on file I/O.
+ * <p>
+ * Each file is split into parts of at most kMaxFileSize bytes, and a new
+ * part is started at every match phase change. Parts are named
+ * &lt;prefix&gt;-&lt;session&gt;-&lt;part&gt;&lt;extension&gt; and recorded in the {@link LogIndex}.
+ * @author Domenic Rodriguez
+ */
+public class LogFile {
+    public static final String kDirectory = "file:///logs/";
+    /** Largest size of a single log file before starting a new one, in bytes */
+    public static final long kMaxFileSize = 1024 * 1024;
+
+    private String m_prefix;
+    private String m_extension;
+    private LogBuffer m_front;
+    private LogBuffer m_back;
+    private volatile boolean m_backPending;
+    private volatile boolean m_syncRequested;
+    private volatile boolean m_rotateRequested;
+    private volatile boolean m_failed;
+
+    // Only touched by the writer thread
+    private FileConnection m_file;
+    private DataOutputStream m_out;
+    private LogIndex.Entry m_entry;
+    private int m_part;
+
+    /**
+     * Create a new log file. The file itself is not opened until the first
+     * records are written.
+     * @param prefix the start of the file name
+     * @param extension the file extension, including the dot
+     * @param bufferSize the size of each of the two buffers in bytes
+     */
+    public LogFile(String prefix, String extension, int bufferSize) {
+        m_prefix = prefix;
+        m_extension = extension;
+        m_front = new LogBuffer(bufferSize);
+        m_back = new LogBuffer(bufferSize);
+        LogWriter.getInstance().register(this);
+    }
+
+    /**
+     * Add a record to the file
+     * @param record array holding the record data
+     * @param offset start of the record within the array
+     * @param length length of the record
+     */
+    public synchronized void write(byte[] record, int offset, int length) {
+        m_front.write(record, offset, length);
+
+        // Hand off to the writer before we start overwriting records
+        if (m_front.getSize() > m_front.getCapacity() / 2)
+            swap();
+    }
+
+    /**
+     * Hand the front buffer to the writer thread if it is ready for more
+     * data. Never blocks; if the writer is still busy, records keep
+     * accumulating in the front buffer.
+     */
+    public synchronized void swap() {
+        if (!m_backPending && m_front.getRecordCount() > 0) {
+            LogBuffer temp = m_back;
+            m_back = m_front;
+            m_front = temp;
+            m_backPending = true;
+            LogWriter.getInstance().wake();
+        }
+    }
+
+    /**
+     * Ask the writer thread to write out everything buffered so far and
+     * flush the file to flash.
+     */
+    public void sync() {
+        m_syncRequested = true;
+        swap();
+        LogWriter.getInstance().wake();
+    }
+
+    /**
+     * Ask the writer thread to flush the file on its next regular pass,
+     * without waking it up early
+     */
+    public void requestSync() {
+        m_syncRequested = true;
+    }
+
+    /**
+     * Ask the writer thread to write out everything buffered so far and
+     * start a new file for any further records
+     */
+    public void rotate() {
+        m_rotateRequested = true;
+        m_failed = false;
+        sync();
+    }
+
+    /**
+     * Get the number of records lost because the buffers were full
+     * @return the number of dropped records
+     */
+    public synchronized int getDroppedCount() {
+        return m_front.getDroppedCount() + m_back.getDroppedCount();
+    }
+
+    /**
+     * Get the name of the file, without the session and part numbers
+     * @return the file name
+     */
+    public String getName() {
+        return m_prefix + m_extension;
+    }
+
+    /**
+     * Write anything that should appear at the very start of the file.
+     * Called by the writer thread when the file is opened.
+     * @param out the file stream
+     * @throws IOException if the stream could not be written
+     */
+    protected void writeHeader(DataOutputStream out) throws IOException {
+    }
+
+    /**
+     * Write out any pending data. Called from the writer thread. After an
+     * I/O error the file is left alone until the next {@link #rotate()},
+     * so a broken flash doesn't keep the writer retrying the same failure.
+     */
+    void service(LogIndex index) {
+        if (m_failed) {
+            if (m_backPending) {
+                m_back.clear();
+                m_backPending = false;
+            }
+            m_syncRequested = false;
+            return;
+        }
+
+        try {
+            if (m_backPending) {
+                if (m_out == null)
+                    open(index);
+                m_entry.records += m_back.getRecordCount();
+                m_entry.bytes += m_back.drain(m_out);
+                m_backPending = false;
+
+                if (m_entry.bytes >= kMaxFileSize)
+                    close(index);
+            }
+            if (m_syncRequested && !m_backPending) {
+                m_syncRequested = false;
+                if (m_out != null) {
+                    m_out.flush();
+                    if (m_rotateRequested)
+                        close(index);
+                    else
+                        index.update();
+                }
+                m_rotateRequested = false;
+            }
+        } catch (IOException e) {
+            // Throw away the data rather than stalling the front buffer
+            m_back.clear();
+            m_backPending = false;
+            m_syncRequested = false;
+            close(index);
+            m_failed = true;
+            LogWriter.reportError("LogFile#service", getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Open the file for writing
+     */
+    private void open(LogIndex index) throws IOException {
+        FileConnection dir = (FileConnection) Connector.open(kDirectory, Connector.READ_WRITE);
+        try {
+            if (!dir.exists())
+                dir.mkdir();
+        } finally {
+            dir.close();
+        }
+
+        String name = m_prefix + "-" + index.getSession() + "-" + m_part + m_extension;
+        m_part++;
+        m_file = (FileConnection) Connector.open(kDirectory + name, Connector.READ_WRITE);
+        if (m_file.exists())
+            m_file.delete();
+        m_file.create();
+        m_out = m_file.openDataOutputStream();
+        m_entry = index.add(name, LogWriter.getInstance().getPhase());
+        index.write();
+        writeHeader(m_out);
+    }
+
+    /**
+     * Close the file and update the index. The next records will go to a
+     * new file. Called from the writer thread.
+     */
+    void close(LogIndex index) {
+        try {
+            if (m_out != null)
+                m_out.close();
+            if (m_file != null)
+                m_file.close();
+        } catch (IOException ex) {
+            LogWriter.reportError("LogFile#close", "Error closing " + getName());
+        }
+        m_out = null;
+        m_file = null;
+
+        if (m_entry != null) {
+            m_entry.open = false;
+            m_entry = null;
+            index.enforceLimit();
+            index.write();
+        }
+    }
+}
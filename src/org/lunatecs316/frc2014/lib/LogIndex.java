@@ -0,0 +1,268 @@
+package org.lunatecs316.frc2014.lib;
+
+import com.sun.squawk.microedition.io.FileConnection;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.Vector;
+import javax.microedition.io.Connector;
+
+/**
+ * Index of the log files in the log directory, oldest first. Each line of
+ * the index file lists a log's name, the match phase it was started in, its
+ * start time, record count and size, so the newest logs can be found
+ * without scanning the directory. The index is also used to delete the
+ * oldest logs once the directory grows past its size limit.
+ * <p>
+ * Only used from the {@link LogWriter} thread.
+ * @author Domenic Rodriguez
+ */
+class LogIndex {
+    public static final String kFilename = "index.txt";
+    /** The new index is written here first, then renamed over the old one */
+    public static final String kTempFilename = "index.tmp";
+    /** Shortest time between rewrites of the index just to update sizes, in milliseconds */
+    public static final long kMinUpdatePeriod = 5000;
+    /** Total size of all logs before the oldest are deleted, in bytes */
+    public static final long kMaxTotalSize = 16 * 1024 * 1024;
+
+    /**
+     * Information about a single log file
+     */
+    static class Entry {
+        String name;
+        String phase;
+        long startTime;
+        int records;
+        long bytes;
+        boolean open;
+    }
+
+    private Vector entries = new Vector();
+    private int session;
+    private boolean loaded;
+    private long lastWrite;
+
+    /**
+     * Get the session number for this run of the robot code. Each boot gets
+     * a new session, so file names never collide across reboots.
+     * @return the session number
+     */
+    int getSession() {
+        load();
+        return session;
+    }
+
+    /**
+     * Add a newly opened log file to the index
+     * @param name the file name
+     * @param phase the current match phase
+     * @return the new entry
+     */
+    Entry add(String name, String phase) {
+        load();
+        Entry e = new Entry();
+        e.name = name;
+        e.phase = phase;
+        e.startTime = System.currentTimeMillis();
+        e.open = true;
+        entries.addElement(e);
+        return e;
+    }
+
+    /**
+     * Delete the oldest closed logs until the total size is under the limit
+     */
+    void enforceLimit() {
+        long total = 0;
+        for (int i = 0; i < entries.size(); i++)
+            total += ((Entry) entries.elementAt(i)).bytes;
+
+        int i = 0;
+        while (total > kMaxTotalSize && i < entries.size()) {
+            Entry e = (Entry) entries.elementAt(i);
+            if (e.open || !delete(e.name)) {
+                // Keep logs that couldn't be deleted; they are tried again next time
+                i++;
+                continue;
+            }
+            total -= e.bytes;
+            entries.removeElementAt(i);
+        }
+    }
+
+    /**
+     * Rewrite the index file to update the sizes of the open logs, unless
+     * it was rewritten recently
+     */
+    void update() {
+        if (System.currentTimeMillis() - lastWrite >= kMinUpdatePeriod)
+            write();
+    }
+
+    /**
+     * Delete a log file
+     * @param name the file name
+     * @return true if the file is gone
+     */
+    private boolean delete(String name) {
+        FileConnection file = null;
+        try {
+            file = (FileConnection) Connector.open(LogFile.kDirectory + name, Connector.READ_WRITE);
+            if (file.exists())
+                file.delete();
+            return true;
+        } catch (IOException ex) {
+            LogWriter.reportError("LogIndex#enforceLimit", "Could not delete " + name);
+            return false;
+        } finally {
+            close(file);
+        }
+    }
+
+    /**
+     * Rewrite the index file. The new index is written to a temporary file
+     * that then replaces the old one, so a reboot partway through never
+     * leaves a truncated index behind.
+     */
+    void write() {
+        lastWrite = System.currentTimeMillis();
+        FileConnection file = null;
+        PrintStream out = null;
+        try {
+            file = (FileConnection) Connector.open(LogFile.kDirectory + kTempFilename, Connector.READ_WRITE);
+            if (file.exists())
+                file.delete();
+            file.create();
+            out = new PrintStream(file.openOutputStream());
+
+            out.println("session," + session);
+            out.println("# name,phase,start,records,bytes");
+            for (int i = 0; i < entries.size(); i++) {
+                Entry e = (Entry) entries.elementAt(i);
+                out.println(e.name + "," + e.phase + "," + e.startTime + "," + e.records + "," + e.bytes);
+            }
+            out.close();
+            boolean failed = out.checkError();
+            out = null;
+            if (failed)
+                throw new IOException("Could not write " + kTempFilename);
+
+            // If we reboot between these two steps, load() finds the temporary file instead
+            FileConnection old = (FileConnection) Connector.open(LogFile.kDirectory + kFilename, Connector.READ_WRITE);
+            try {
+                if (old.exists())
+                    old.delete();
+            } finally {
+                close(old);
+            }
+            file.rename(kFilename);
+        } catch (IOException ex) {
+            LogWriter.reportError("LogIndex#write", ex.getMessage());
+        } finally {
+            if (out != null)
+                out.close();
+            close(file);
+        }
+    }
+
+    /**
+     * Read the existing index file, if there is one
+     */
+    private void load() {
+        if (loaded)
+            return;
+        loaded = true;
+
+        // The index is only missing while the temporary file is being renamed
+        if (!read(kFilename))
+            read(kTempFilename);
+
+        // Claim the next session number right away
+        session++;
+        write();
+    }
+
+    /**
+     * Read an index file
+     * @param name the file name
+     * @return true if the file exists
+     */
+    private boolean read(String name) {
+        FileConnection file = null;
+        InputStreamReader reader = null;
+        try {
+            file = (FileConnection) Connector.open(LogFile.kDirectory + name, Connector.READ);
+            if (!file.exists())
+                return false;
+
+            reader = new InputStreamReader(file.openInputStream());
+            StringBuffer line = new StringBuffer();
+            int c;
+            do {
+                c = reader.read();
+                if (c == '\n' || c == -1) {
+                    parseLine(line.toString().trim());
+                    line.setLength(0);
+                } else {
+                    line.append((char) c);
+                }
+            } while (c != -1);
+        } catch (IOException ex) {
+            LogWriter.reportError("LogIndex#load", ex.getMessage());
+        } finally {
+            try {
+                if (reader != null)
+                    reader.close();
+            } catch (IOException ex) {
+            }
+            close(file);
+        }
+        return true;
+    }
+
+    /**
+     * Parse one line of the index file
+     */
+    private void parseLine(String line) {
+        if (line.length() == 0 || line.startsWith("#"))
+            return;
+
+        String[] fields = new String[5];
+        int count = 0;
+        int start = 0;
+        while (count < fields.length) {
+            int end = line.indexOf(',', start);
+            if (end == -1) {
+                fields[count++] = line.substring(start);
+                break;
+            }
+            fields[count++] = line.substring(start, end);
+            start = end + 1;
+        }
+
+        try {
+            if (count == 2 && fields[0].equals("session")) {
+                session = Integer.parseInt(fields[1]);
+            } else if (count == 5) {
+                Entry e = new Entry();
+                e.name = fields[0];
+                e.phase = fields[1];
+                e.startTime = Long.parseLong(fields[2]);
+                e.records = Integer.parseInt(fields[3]);
+                e.bytes = Long.parseLong(fields[4]);
+                entries.addElement(e);
+            }
+        } catch (NumberFormatException ex) {
+            LogWriter.reportError("LogIndex#load", "Ignoring bad line: " + line);
+        }
+    }
+
+    private static void close(FileConnection file) {
+        try {
+            if (file != null)
+                file.close();
+        } catch (IOException ex) {
+        }
+    }
+}
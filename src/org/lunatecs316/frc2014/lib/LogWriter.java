@@ -0,0 +1,147 @@
+package org.lunatecs316.frc2014.lib;
+
+/**
+ * Low priority background thread that streams {@link LogFile} buffers to
+ * flash while the robot is running.
+ * @author Domenic Rodriguez
+ */
+public class LogWriter implements Runnable {
+    public static final int kMaxFiles = 16;
+    /** How often buffered data is handed to the writer, in milliseconds */
+    public static final long kFlushPeriod = 500;
+
+    private static LogWriter instance;
+
+    private LogFile[] files = new LogFile[kMaxFiles];
+    private int fileCount;
+    private Object lock = new Object();
+    private boolean pending;
+    private LogIndex index = new LogIndex();
+    private volatile String phase = "init";
+    private static int errorCount;
+
+    /**
+     * Default constructor
+     */
+    private LogWriter() {
+    }
+
+    /**
+     * Get the shared instance, starting the writer thread if needed
+     * @return the log writer
+     */
+    public static synchronized LogWriter getInstance() {
+        if (instance == null) {
+            instance = new LogWriter();
+            Thread thread = new Thread(instance);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.start();
+        }
+        return instance;
+    }
+
+    /**
+     * Add a file to be serviced by the writer
+     * @param file the file
+     */
+    synchronized void register(LogFile file) {
+        if (fileCount < kMaxFiles)
+            files[fileCount++] = file;
+        else
+            System.err.println("LogWriter: too many log files, ignoring " + file.getName());
+    }
+
+    /**
+     * Wake the writer thread so it can service any pending buffers
+     */
+    void wake() {
+        synchronized (lock) {
+            pending = true;
+            lock.notify();
+        }
+    }
+
+    /**
+     * Write out all buffered data and flush every file to flash
+     */
+    public void sync() {
+        int count;
+        synchronized (this) {
+            count = fileCount;
+        }
+        for (int i = 0; i < count; i++)
+            files[i].sync();
+    }
+
+    /**
+     * Start a new match phase. Everything logged so far is written out, and
+     * each log starts a new file tagged with the phase in the index.
+     * @param name the name of the phase (e.g. "autonomous")
+     */
+    public void startPhase(String name) {
+        phase = name;
+        int count;
+        synchronized (this) {
+            count = fileCount;
+        }
+        for (int i = 0; i < count; i++)
+            files[i].rotate();
+    }
+
+    /**
+     * Get the current match phase
+     * @return the name of the phase
+     */
+    public String getPhase() {
+        return phase;
+    }
+
+    /**
+     * Report an error from the writer thread. Errors go straight to the
+     * console instead of through a {@link LogChannel}: logging them would
+     * wake the writer to retry the I/O that just failed. Only the first
+     * error is printed; the rest are counted.
+     * @param context contextual information on the location of the program
+     * @param message the error message
+     */
+    static synchronized void reportError(String context, String message) {
+        errorCount++;
+        if (errorCount == 1)
+            System.err.println("[" + context + "] ERROR: " + message + " (further log errors are only counted)");
+    }
+
+    /**
+     * Get the number of errors the writer thread has run into
+     * @return the number of log file errors since boot
+     */
+    public static synchronized int getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * Writer thread main loop
+     */
+    public void run() {
+        while (true) {
+            synchronized (lock) {
+                if (!pending) {
+                    try {
+                        lock.wait(kFlushPeriod);
+                    } catch (InterruptedException e) {
+                    }
+                }
+                pending = false;
+            }
+
+            int count;
+            synchronized (this) {
+                count = fileCount;
+            }
+            for (int i = 0; i < count; i++) {
+                // Pick up whatever has accumulated since the last pass
+                files[i].swap();
+                files[i].service(index);
+            }
+        }
+    }
+}
@@ -1,13 +1,9 @@
 package org.lunatecs316.frc2014.lib;
 
-import java.util.Vector;
-import com.sun.squawk.microedition.io.FileConnection;
-import javax.microedition.io.Connector;
-import java.io.IOException;
-import java.io.PrintStream;
-import java.util.Enumeration;
 /**
- * Helper class for logging information to console output
+ * Helper class for logging information to the console and to log files.
+ * Messages are split into independent {@link LogChannel}s; the static
+ * methods here log to the main channel.
  * @author Domenic Rodriguez
  */
 public class Logger {
@@ -37,124 +33,287 @@ public class Logger {
         }
     }
 
-    private static IterativeTimer timer;
-    private static Level currentLevel;
-    private static boolean toFile;
-    private static Vector messages;
+    /**
+     * Set to false for competition builds. Every debug() call then compiles
+     * down to an empty method, so DEBUG messages cost nothing at all.
+     */
+    public static final boolean kDebug = true;
+
+    private static long startTime = System.currentTimeMillis();
+
+    /** General robot messages. Everything logged through the static methods goes here. */
+    public static final LogChannel Main = new LogChannel("robot", 16 * 1024, Level.DEBUG, true, LogChannel.kFlushPeriodic);
+    /** Data recorded every time we shoot */
+    public static final LogChannel Shots = new LogChannel("shots", 4 * 1024, Level.DEBUG, true, LogChannel.kFlushPeriodic);
+    /** Autonomous mode state changes */
+    public static final LogChannel Auto = new LogChannel("auto", 4 * 1024, Level.DEBUG, true, LogChannel.kFlushPeriodic);
+    /** Warnings and errors from every channel */
+    public static final LogChannel Faults = new LogChannel("faults", 4 * 1024, Level.DEBUG, false, LogChannel.kFlushImmediate);
+    /** High rate data from every iteration of the robot loop. Not printed to the console. */
+    public static final LogChannel Loop = new LogChannel("loop", 32 * 1024, Level.DEBUG, false, LogChannel.kFlushPeriodic);
 
     static {
-        timer = new IterativeTimer();
-        messages = new Vector();
-        currentLevel = Level.DEBUG;
+        // The main channel only goes to a file when asked to
+        Main.enableFileLogging(false);
+    }
+
+    /**
+     * Get the time the logger was started. All records are timestamped
+     * relative to this.
+     * @return the start time in milliseconds
+     */
+    public static long getStartTime() {
+        return startTime;
     }
 
     /**
-     * Set the detail currentLevel of the logger
-     * @param l the detail currentLevel
+     * Set the detail level of the main channel
+     * @param l the detail level
      */
     public static void setLevel(Level l) {
-        currentLevel = l;
+        Main.setLevel(l);
     }
 
     /**
-     * Print an informative message
+     * Check if messages of the given level will be output by the main channel
+     * @param level the level to check
+     * @return true if a message at this level would be logged
+     */
+    public static boolean isEnabled(Level level) {
+        return Main.isEnabled(level);
+    }
+
+    /**
+     * Log an informative message
      * @param context contextual information on the location of the program
      * @param message the message to print
      */
     public static void info(String context, String message) {
-        log(Level.INFO, context, message);
+        Main.info(context, message);
+    }
+
+    /**
+     * Log an informative message, substituting a value into a format key. The message
+     * is only formatted if it will actually be output.
+     * @param context contextual information on the location of the program
+     * @param key constant message text, with {} marking where the value goes
+     * @param a the value
+     */
+    public static void info(String context, String key, double a) {
+        Main.info(context, key, a);
+    }
+
+    /**
+     * @see #info(String, String, double)
+     */
+    public static void info(String context, String key, int a) {
+        Main.info(context, key, a);
+    }
+
+    /**
+     * @see #info(String, String, double)
+     */
+    public static void info(String context, String key, boolean a) {
+        Main.info(context, key, a);
+    }
+
+    /**
+     * @see #info(String, String, double)
+     */
+    public static void info(String context, String key, double a, double b) {
+        Main.info(context, key, a, b);
     }
 
     /**
-     * Print a warning message
+     * @see #info(String, String, double)
+     */
+    public static void info(String context, String key, double a, double b, double c) {
+        Main.info(context, key, a, b, c);
+    }
+
+    /**
+     * Log a warning message
      * @param context contextual information on the location of the program
      * @param message the message to print
      */
     public static void warning(String context, String message) {
-        log(Level.WARNING, context, message);
+        Main.warning(context, message);
+    }
+
+    /**
+     * Log a warning message, substituting a value into a format key. The message
+     * is only formatted if it will actually be output.
+     * @param context contextual information on the location of the program
+     * @param key constant message text, with {} marking where the value goes
+     * @param a the value
+     */
+    public static void warning(String context, String key, double a) {
+        Main.warning(context, key, a);
+    }
+
+    /**
+     * @see #warning(String, String, double)
+     */
+    public static void warning(String context, String key, int a) {
+        Main.warning(context, key, a);
     }
 
     /**
-     * Print an error message
+     * @see #warning(String, String, double)
+     */
+    public static void warning(String context, String key, boolean a) {
+        Main.warning(context, key, a);
+    }
+
+    /**
+     * @see #warning(String, String, double)
+     */
+    public static void warning(String context, String key, double a, double b) {
+        Main.warning(context, key, a, b);
+    }
+
+    /**
+     * @see #warning(String, String, double)
+     */
+    public static void warning(String context, String key, double a, double b, double c) {
+        Main.warning(context, key, a, b, c);
+    }
+
+    /**
+     * Log an error message
      * @param context contextual information on the location of the program
      * @param message the message to print
      */
     public static void error(String context, String message) {
-        log(Level.ERROR, context, message);
+        Main.error(context, message);
     }
 
     /**
-     * Print a debugging message
+     * Log an error message, substituting a value into a format key. The message
+     * is only formatted if it will actually be output.
+     * @param context contextual information on the location of the program
+     * @param key constant message text, with {} marking where the value goes
+     * @param a the value
+     */
+    public static void error(String context, String key, double a) {
+        Main.error(context, key, a);
+    }
+
+    /**
+     * @see #error(String, String, double)
+     */
+    public static void error(String context, String key, int a) {
+        Main.error(context, key, a);
+    }
+
+    /**
+     * @see #error(String, String, double)
+     */
+    public static void error(String context, String key, boolean a) {
+        Main.error(context, key, a);
+    }
+
+    /**
+     * @see #error(String, String, double)
+     */
+    public static void error(String context, String key, double a, double b) {
+        Main.error(context, key, a, b);
+    }
+
+    /**
+     * @see #error(String, String, double)
+     */
+    public static void error(String context, String key, double a, double b, double c) {
+        Main.error(context, key, a, b, c);
+    }
+
+    /**
+     * Log a debugging message
      * @param context contextual information on the location of the program
      * @param message the message to print
      */
     public static void debug(String context, String message) {
-        log(Level.DEBUG, context, message);
+        Main.debug(context, message);
+    }
+
+    /**
+     * Log a debugging message, substituting a value into a format key. The message
+     * is only formatted if it will actually be output.
+     * @param context contextual information on the location of the program
+     * @param key constant message text, with {} marking where the value goes
+     * @param a the value
+     */
+    public static void debug(String context, String key, double a) {
+        Main.debug(context, key, a);
+    }
+
+    /**
+     * @see #debug(String, String, double)
+     */
+    public static void debug(String context, String key, int a) {
+        Main.debug(context, key, a);
     }
 
     /**
-     * Enable or disable file logging
+     * @see #debug(String, String, double)
+     */
+    public static void debug(String context, String key, boolean a) {
+        Main.debug(context, key, a);
+    }
+
+    /**
+     * @see #debug(String, String, double)
+     */
+    public static void debug(String context, String key, double a, double b) {
+        Main.debug(context, key, a, b);
+    }
+
+    /**
+     * @see #debug(String, String, double)
+     */
+    public static void debug(String context, String key, double a, double b, double c) {
+        Main.debug(context, key, a, b, c);
+    }
+
+    /**
+     * Enable or disable console logging on the main channel
+     * @param enabled
+     */
+    public static void enableConsoleLogging(boolean enabled) {
+        Main.enableConsoleLogging(enabled);
+    }
+
+    /**
+     * Enable or disable file logging on the main channel
      * @param enabled
      */
     public static void enableFileLogging(boolean enabled) {
-        toFile = enabled;
+        Main.enableFileLogging(enabled);
     }
 
     /**
-     * Perform the actual logging operation
-     * @param level the severity of the message
-     * @param context contextual information on the location of the program
-     * @param message the message to print
+     * Get the number of records the main channel lost because its buffer
+     * was full
+     * @return the number of dropped records
      */
-    private static void log(Level level, String context, String message) {
-        if (currentLevel.getValue() >= level.getValue()) {
-            String output = timer.getValue() + " [" + context + "] " + level + ": " + message;
-            if (level == Level.WARNING || level == Level.ERROR)
-                System.err.println(output);
-            else
-                System.out.println(output);
-
-            if (toFile) {
-                messages.addElement(output);
-            }
-        }
+    public static int getDroppedCount() {
+        return Main.getDroppedCount();
     }
 
     /**
-     * Write the log data to a file
-     */
-    public static void writeToFile() {
-        if (messages.size() > 0) {
-            FileConnection file = null;
-            PrintStream writer = null;
-
-            try {
-                // Open the file
-                file = (FileConnection) Connector.open("file:///logs/match" + timer.getValue() + ".log", Connector.WRITE);
-                writer = new PrintStream(file.openDataOutputStream());
-
-                // Write each vector element
-                Enumeration e = messages.elements();
-                while (e.hasMoreElements()) {
-                    String msg = (String) e.nextElement();
-                    writer.println(msg);
-                }
-                messages.removeAllElements();
-            } catch (IOException e){
-                Logger.error("Logger.writeToFile", e.getMessage());
-            } finally {
-                try {
-                    if (writer != null)
-                        writer.close();
-                    if (file != null)
-                        file.close();
-                } catch (IOException ex) {
-                    Logger.error("Logger.writeToFile", "Error closing file");
-                }
-            }
-        } else {
-            Logger.info("Logger.writeToFile", "No messages to write");
-        }
+     * Mark the start of a new match phase. All buffered data is written
+     * out, and every log starts a new file tagged with the phase.
+     * @param phase the name of the phase (e.g. "autonomous")
+     */
+    public static void startPhase(String phase) {
+        LogWriter.getInstance().startPhase(phase);
     }
-}
 
+    /**
+     * Write all buffered log data to flash. The actual file I/O happens on
+     * the background {@link LogWriter} thread, so this returns immediately.
+     */
+    public static void sync() {
+        LogWriter.getInstance().sync();
+    }
+}
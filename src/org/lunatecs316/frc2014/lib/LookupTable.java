@@ -0,0 +1,73 @@
+package org.lunatecs316.frc2014.lib;
+
+/**
+ * A function sampled at evenly spaced points over a fixed range, with linear
+ * interpolation between the samples. Useful for replacing expensive math
+ * (like repeated trig calls) in the robot loop. The samples are only
+ * recomputed when {@link #rebuild()} is called.
+ * @author Domenic Rodriguez
+ */
+public abstract class LookupTable {
+    private final double m_min;
+    private final double m_max;
+    private final double m_scale;
+    private final double[] m_values;
+
+    /**
+     * Create a new table. Subclasses must call {@link #rebuild()} once they
+     * are ready for {@link #compute(double)} to be called.
+     * @param min the smallest input value
+     * @param max the largest input value
+     * @param size the number of samples (at least 2)
+     */
+    protected LookupTable(double min, double max, int size) {
+        m_min = min;
+        m_max = max;
+        m_values = new double[size];
+        m_scale = (size - 1) / (max - min);
+    }
+
+    /**
+     * The function being sampled
+     * @param x the input value, between min and max
+     * @return the value of the function at x
+     */
+    protected abstract double compute(double x);
+
+    /**
+     * Recompute every sample of the table
+     */
+    public final void rebuild() {
+        int last = m_values.length - 1;
+        for (int i = 0; i <= last; i++)
+            m_values[i] = compute(m_min + (m_max - m_min) * i / last);
+    }
+
+    /**
+     * Look up the value of the function. Inputs outside of the table's range
+     * are clamped to the ends of the table.
+     * @param x the input value
+     * @return the interpolated value of the function at x
+     */
+    public final double get(double x) {
+        if (x <= m_min)
+            return m_values[0];
+        if (x >= m_max)
+            return m_values[m_values.length - 1];
+
+        double position = (x - m_min) * m_scale;
+        int i = (int) position;
+        if (i >= m_values.length - 1)
+            return m_values[m_values.length - 1];
+        double fraction = position - i;
+        return m_values[i] + (m_values[i + 1] - m_values[i]) * fraction;
+    }
+
+    /**
+     * Get the number of samples in the table
+     * @return the table size
+     */
+    public int getSize() {
+        return m_values.length;
+    }
+}
@@ -0,0 +1,103 @@
+package org.lunatecs316.frc2014.lib;
+
+/**
+ * Single-slot mailbox for passing commands from one thread to another
+ * without locks. Each message is a command code and two values. Posting a
+ * new message replaces the old one, so the reader always sees the most
+ * recent intent.
+ * <p>
+ * A sequence number is bumped before and after each write, so the reader
+ * can tell when it has seen a half-written message (the number is odd, or
+ * changed while reading) and just tries again on its next poll. Neither side
+ * ever blocks. Each mailbox must have exactly one writing thread and one
+ * reading thread.
+ * @author Domenic Rodriguez
+ */
+public final class Mailbox {
+    // Written only by the writer
+    private volatile int m_sequence;
+    private volatile int m_command;
+    private volatile double m_value;
+    private volatile double m_argument;
+
+    // Only touched by the reader
+    private int m_readSequence;
+    private int m_readCommand;
+    private double m_readValue;
+    private double m_readArgument;
+
+    /**
+     * Post a new message, replacing any message that has not been read yet.
+     * Only call from the writing thread.
+     * @param command the command code
+     * @param value the first value
+     * @param argument the second value
+     * @return the sequence number of the message
+     */
+    public int post(int command, double value, double argument) {
+        int sequence = m_sequence;
+        m_sequence = sequence + 1;
+        m_command = command;
+        m_value = value;
+        m_argument = argument;
+        m_sequence = sequence + 2;
+        return sequence + 2;
+    }
+
+    /**
+     * Check for a new message. Only call from the reading thread.
+     * @return true if a new message was read; its contents are then
+     * available from the getters
+     */
+    public boolean poll() {
+        int sequence = m_sequence;
+        if (sequence == m_readSequence || (sequence & 1) != 0)
+            return false;
+
+        int command = m_command;
+        double value = m_value;
+        double argument = m_argument;
+
+        // The writer got in while we were reading; try again next time
+        if (m_sequence != sequence)
+            return false;
+
+        m_readSequence = sequence;
+        m_readCommand = command;
+        m_readValue = value;
+        m_readArgument = argument;
+        return true;
+    }
+
+    /**
+     * Get the sequence number of the last message read
+     * @return the sequence number
+     */
+    public int getSequence() {
+        return m_readSequence;
+    }
+
+    /**
+     * Get the command code of the last message read
+     * @return the command code
+     */
+    public int getCommand() {
+        return m_readCommand;
+    }
+
+    /**
+     * Get the first value of the last message read
+     * @return the value
+     */
+    public double getValue() {
+        return m_readValue;
+    }
+
+    /**
+     * Get the second value of the last message read
+     * @return the argument
+     */
+    public double getArgument() {
+        return m_readArgument;
+    }
+}
@@ -0,0 +1,124 @@
+package org.lunatecs316.frc2014.lib;
+
+/**
+ * Tracks the robot's position on the field from the distance driven and the
+ * change in heading each loop, along with an estimate of how uncertain
+ * that position is. Uncertainty grows as the robot drives, so the
+ * covariance shows how far the pose can be trusted since the last reset.
+ * <p>
+ * At a heading of 0, x is forward and y is to the right. Headings are in
+ * degrees, increasing clockwise like the gyro.
+ * @author Domenic Rodriguez
+ */
+public class Odometry {
+    private double m_distanceNoise;
+    private double m_headingNoise;
+
+    private double m_x;
+    private double m_y;
+    private double m_heading;
+
+    // Covariance matrix, heading terms in radians
+    private double m_xx, m_xy, m_xh;
+    private double m_yy, m_yh;
+    private double m_hh;
+
+    /**
+     * Create a new pose estimator, starting at the origin
+     * @param distanceNoise standard deviation of the distance driven, as a
+     * fraction of the distance
+     * @param headingNoise standard deviation of each heading change, as a
+     * fraction of the change
+     */
+    public Odometry(double distanceNoise, double headingNoise) {
+        m_distanceNoise = distanceNoise;
+        m_headingNoise = headingNoise;
+        reset(0.0, 0.0, 0.0);
+    }
+
+    /**
+     * Set the pose, and mark it as known exactly
+     * @param x the x position
+     * @param y the y position
+     * @param heading the heading in degrees
+     */
+    public void reset(double x, double y, double heading) {
+        m_x = x;
+        m_y = y;
+        m_heading = heading;
+        m_xx = m_xy = m_xh = m_yy = m_yh = m_hh = 0.0;
+    }
+
+    /**
+     * Move the pose forward by one step
+     * @param distance the distance driven since the last update
+     * @param headingChange the change in heading since the last update, in
+     * degrees
+     */
+    public void update(double distance, double headingChange) {
+        // Drive along the average heading over the step
+        double theta = Math.toRadians(m_heading + headingChange / 2.0);
+        double cos = Math.cos(theta);
+        double sin = Math.sin(theta);
+        m_x += distance * cos;
+        m_y += distance * sin;
+        m_heading += headingChange;
+
+        // Propagate the covariance: P = F P F' + G Q G', where
+        // F = [1 0 -d sin; 0 1 d cos; 0 0 1] and G = [cos; sin; 0] for distance
+        double dx = -distance * sin;
+        double dy = distance * cos;
+
+        double xx = m_xx + 2 * dx * m_xh + dx * dx * m_hh;
+        double xy = m_xy + dy * m_xh + dx * m_yh + dx * dy * m_hh;
+        double xh = m_xh + dx * m_hh;
+        double yy = m_yy + 2 * dy * m_yh + dy * dy * m_hh;
+        double yh = m_yh + dy * m_hh;
+
+        double distanceVariance = (m_distanceNoise * distance) * (m_distanceNoise * distance);
+        double headingError = Math.toRadians(m_headingNoise * headingChange);
+
+        m_xx = xx + cos * cos * distanceVariance;
+        m_xy = xy + cos * sin * distanceVariance;
+        m_xh = xh;
+        m_yy = yy + sin * sin * distanceVariance;
+        m_yh = yh;
+        m_hh += headingError * headingError;
+    }
+
+    public double getX() {
+        return m_x;
+    }
+
+    public double getY() {
+        return m_y;
+    }
+
+    /**
+     * Get the heading
+     * @return the heading in degrees
+     */
+    public double getHeading() {
+        return m_heading;
+    }
+
+    public double getVarianceX() {
+        return m_xx;
+    }
+
+    public double getVarianceY() {
+        return m_yy;
+    }
+
+    public double getCovarianceXY() {
+        return m_xy;
+    }
+
+    /**
+     * Get the variance of the heading
+     * @return the heading variance in degrees squared
+     */
+    public double getVarianceHeading() {
+        return Math.toDegrees(Math.toDegrees(m_hh));
+    }
+}
@@ -0,0 +1,107 @@
+package org.lunatecs316.frc2014.lib;
+
+/**
+ * A smooth path through a list of waypoints, sampled into closely spaced
+ * points. The curve is a Catmull-Rom spline, so it passes through every
+ * waypoint. All of the points are computed when the path is created and
+ * stored in primitive arrays, so following the path doesn't allocate
+ * anything.
+ * @author Domenic Rodriguez
+ */
+public class Path {
+    private double[] m_x;
+    private double[] m_y;
+    private double[] m_distance;
+
+    /**
+     * Create a new path
+     * @param waypointX the x position of each waypoint
+     * @param waypointY the y position of each waypoint
+     * @param spacing the approximate distance between sampled points
+     */
+    public Path(double[] waypointX, double[] waypointY, double spacing) {
+        int waypoints = waypointX.length;
+        if (waypoints < 2 || waypointY.length != waypoints)
+            throw new IllegalArgumentException("A path needs at least two waypoints");
+
+        // Count the samples first so the arrays can be allocated exactly
+        int count = 1;
+        for (int i = 0; i < waypoints - 1; i++)
+            count += steps(waypointX, waypointY, i, spacing);
+
+        m_x = new double[count];
+        m_y = new double[count];
+        m_distance = new double[count];
+
+        m_x[0] = waypointX[0];
+        m_y[0] = waypointY[0];
+        int n = 1;
+        for (int i = 0; i < waypoints - 1; i++) {
+            // Neighboring waypoints, repeating the ends
+            int i0 = Math.max(i - 1, 0);
+            int i3 = Math.min(i + 2, waypoints - 1);
+            int steps = steps(waypointX, waypointY, i, spacing);
+            for (int j = 1; j <= steps; j++) {
+                double t = (double) j / steps;
+                m_x[n] = spline(waypointX[i0], waypointX[i], waypointX[i + 1], waypointX[i3], t);
+                m_y[n] = spline(waypointY[i0], waypointY[i], waypointY[i + 1], waypointY[i3], t);
+                double dx = m_x[n] - m_x[n - 1];
+                double dy = m_y[n] - m_y[n - 1];
+                m_distance[n] = m_distance[n - 1] + Math.sqrt(dx * dx + dy * dy);
+                n++;
+            }
+        }
+    }
+
+    /**
+     * Get the number of sampled points
+     * @return the number of points
+     */
+    public int size() {
+        return m_x.length;
+    }
+
+    public double getX(int i) {
+        return m_x[i];
+    }
+
+    public double getY(int i) {
+        return m_y[i];
+    }
+
+    /**
+     * Get the distance along the path to a point
+     * @param i the point index
+     * @return the distance from the start of the path
+     */
+    public double getDistance(int i) {
+        return m_distance[i];
+    }
+
+    /**
+     * Get the total length of the path
+     * @return the path length
+     */
+    public double getLength() {
+        return m_distance[m_distance.length - 1];
+    }
+
+    /**
+     * Number of samples to take between two waypoints
+     */
+    private static int steps(double[] x, double[] y, int i, double spacing) {
+        double dx = x[i + 1] - x[i];
+        double dy = y[i + 1] - y[i];
+        return Math.max(1, (int) Math.ceil(Math.sqrt(dx * dx + dy * dy) / spacing));
+    }
+
+    /**
+     * Catmull-Rom spline between p1 and p2
+     */
+    private static double spline(double p0, double p1, double p2, double p3, double t) {
+        double t2 = t * t;
+        double t3 = t2 * t;
+        return 0.5 * (2 * p1 + (p2 - p0) * t + (2 * p0 - 5 * p1 + 4 * p2 - p3) * t2
+                + (3 * p1 - p0 - 3 * p2 + p3) * t3);
+    }
+}
@@ -0,0 +1,152 @@
+package org.lunatecs316.frc2014.lib;
+
+/**
+ * Pure pursuit path follower. Each step, finds the point on the path one
+ * lookahead distance ahead of the robot and steers along the arc that
+ * reaches it. Progress along the path only moves forward, and only a short
+ * stretch of the path is searched each step, so the cost is small and
+ * constant.
+ * <p>
+ * Uses the same coordinates as {@link Odometry}: x forward and y to the
+ * right at a heading of 0, with headings in degrees clockwise.
+ * @author Domenic Rodriguez
+ */
+public class PurePursuit {
+    /** Number of points past the last closest point to search */
+    public static final int kSearchWindow = 50;
+
+    private Path m_path;
+    private double m_lookahead;
+    private double m_trackWidth;
+    private int m_closest;
+    private int m_target;
+    private double m_curvature;
+    private double m_left;
+    private double m_right;
+
+    /**
+     * Create a new path follower
+     * @param path the path to follow
+     * @param lookahead how far ahead on the path to aim
+     * @param trackWidth the distance between the left and right wheels
+     */
+    public PurePursuit(Path path, double lookahead, double trackWidth) {
+        m_path = path;
+        m_lookahead = lookahead;
+        m_trackWidth = trackWidth;
+        reset();
+    }
+
+    /**
+     * Start again from the beginning of the path
+     */
+    public void reset() {
+        m_closest = m_target = 0;
+        m_curvature = m_left = m_right = 0.0;
+    }
+
+    /**
+     * Change the lookahead distance
+     * @param lookahead how far ahead on the path to aim
+     */
+    public void setLookahead(double lookahead) {
+        m_lookahead = lookahead;
+    }
+
+    /**
+     * Calculate the wheel outputs for the current pose
+     * @param x the robot's x position
+     * @param y the robot's y position
+     * @param heading the robot's heading in degrees
+     * @param speed the output for the faster side of the robot (0 to 1)
+     */
+    public void update(double x, double y, double heading, double speed) {
+        int last = m_path.size() - 1;
+
+        // Find the closest point, only moving forward along the path
+        int end = Math.min(last, m_closest + kSearchWindow);
+        double best = distanceSquared(m_closest, x, y);
+        for (int i = m_closest + 1; i <= end; i++) {
+            double d = distanceSquared(i, x, y);
+            if (d < best) {
+                best = d;
+                m_closest = i;
+            }
+        }
+
+        // Find the first point at least one lookahead away
+        double lookaheadSquared = m_lookahead * m_lookahead;
+        m_target = Math.max(m_target, m_closest);
+        while (m_target < last && distanceSquared(m_target, x, y) < lookaheadSquared)
+            m_target++;
+
+        // Position of the target point relative to the robot
+        double theta = Math.toRadians(heading);
+        double dx = m_path.getX(m_target) - x;
+        double dy = m_path.getY(m_target) - y;
+        double right = -dx * Math.sin(theta) + dy * Math.cos(theta);
+        double lengthSquared = dx * dx + dy * dy;
+
+        // Curvature of the arc through the target point
+        m_curvature = (lengthSquared > 1e-6) ? 2.0 * right / lengthSquared : 0.0;
+        m_left = speed * (1.0 + m_curvature * m_trackWidth / 2.0);
+        m_right = speed * (1.0 - m_curvature * m_trackWidth / 2.0);
+
+        // Keep the faster side at the requested speed
+        double max = Math.max(Math.abs(m_left), Math.abs(m_right));
+        if (max > Math.abs(speed) && max > 0) {
+            m_left *= Math.abs(speed) / max;
+            m_right *= Math.abs(speed) / max;
+        }
+    }
+
+    /**
+     * Get the left side output from the last update
+     * @return the left output
+     */
+    public double getLeft() {
+        return m_left;
+    }
+
+    /**
+     * Get the right side output from the last update
+     * @return the right output
+     */
+    public double getRight() {
+        return m_right;
+    }
+
+    /**
+     * Get the curvature being steered
+     * @return the curvature, positive to the right
+     */
+    public double getCurvature() {
+        return m_curvature;
+    }
+
+    /**
+     * Get the distance left along the path from the closest point
+     * @return the remaining distance
+     */
+    public double getRemaining() {
+        return m_path.getLength() - m_path.getDistance(m_closest);
+    }
+
+    /**
+     * Check if the robot has reached the end of the path
+     * @param x the robot's x position
+     * @param y the robot's y position
+     * @param tolerance how close to the end the robot must be
+     * @return true if the robot is at the end of the path
+     */
+    public boolean isFinished(double x, double y, double tolerance) {
+        return m_closest == m_path.size() - 1
+                || distanceSquared(m_path.size() - 1, x, y) < tolerance * tolerance;
+    }
+
+    private double distanceSquared(int i, double x, double y) {
+        double dx = m_path.getX(i) - x;
+        double dy = m_path.getY(i) - y;
+        return dx * dx + dy * dy;
+    }
+}
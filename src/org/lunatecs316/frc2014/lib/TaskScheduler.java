@@ -0,0 +1,184 @@
+package org.lunatecs316.frc2014.lib;
+
+import edu.wpi.first.wpilibj.Utility;
+
+/**
+ * High priority thread that runs short timed actions (like re-engaging the
+ * shooter clutch) at precise deadlines, independent of the robot loop.
+ * <p>
+ * Each actuator that needs timed actions gets its own slot. A slot holds at
+ * most one task, so scheduling a new task on a slot cancels whatever was
+ * there before; two timed actions can never fight over the same motor.
+ * Tasks are created once by their owner and reused, so scheduling never
+ * allocates. Deadlines are measured in microseconds on the FPGA clock; the
+ * thread sleeps until the earliest deadline, so tasks run within about a
+ * millisecond of when they are due.
+ * @author Domenic Rodriguez
+ */
+public class TaskScheduler implements Runnable {
+    public static final int kMaxSlots = 8;
+    /** Longest time the thread sleeps when nothing is due, in milliseconds */
+    public static final long kMaxSleep = 20;
+
+    private static TaskScheduler instance;
+
+    /**
+     * An action to be run by the scheduler. Tasks run on the scheduler
+     * thread and must be short; they should never block.
+     */
+    public static abstract class Task {
+        private long m_deadline;
+        private long m_period;
+
+        /**
+         * Run the task
+         * @return true to run again after the task's period, false if the
+         * task is finished
+         */
+        protected abstract boolean run();
+    }
+
+    private Task[] m_slots = new Task[kMaxSlots];
+    private String[] m_names = new String[kMaxSlots];
+    /** Bumped whenever a slot is scheduled or cancelled */
+    private int[] m_versions = new int[kMaxSlots];
+    private int m_slotCount;
+
+    /**
+     * Default constructor
+     */
+    private TaskScheduler() {
+    }
+
+    /**
+     * Get the shared instance, starting the scheduler thread if needed
+     * @return the task scheduler
+     */
+    public static synchronized TaskScheduler getInstance() {
+        if (instance == null) {
+            instance = new TaskScheduler();
+            Thread thread = new Thread(instance);
+            thread.setPriority(Thread.MAX_PRIORITY);
+            thread.start();
+        }
+        return instance;
+    }
+
+    /**
+     * Reserve a slot for an actuator
+     * @param name the name of the slot, for error messages
+     * @return the slot number
+     */
+    public synchronized int addSlot(String name) {
+        if (m_slotCount >= kMaxSlots)
+            throw new IllegalStateException("Too many scheduler slots, can't add " + name);
+        m_names[m_slotCount] = name;
+        return m_slotCount++;
+    }
+
+    /**
+     * Run a task once after a delay, replacing any task in the slot
+     * @param slot the slot to run the task in
+     * @param task the task to run
+     * @param delay microseconds from now until the task runs
+     */
+    public void schedule(int slot, Task task, long delay) {
+        schedule(slot, task, delay, 0);
+    }
+
+    /**
+     * Run a task after a delay, and then repeatedly until it reports it is
+     * finished. Replaces any task in the slot.
+     * @param slot the slot to run the task in
+     * @param task the task to run
+     * @param delay microseconds from now until the task first runs
+     * @param period microseconds between runs
+     */
+    public synchronized void schedule(int slot, Task task, long delay, long period) {
+        task.m_deadline = Utility.getFPGATime() + delay;
+        task.m_period = period;
+        m_slots[slot] = task;
+        m_versions[slot]++;
+        notify();
+    }
+
+    /**
+     * Cancel the task in a slot, if there is one
+     * @param slot the slot to clear
+     */
+    public synchronized void cancel(int slot) {
+        m_slots[slot] = null;
+        m_versions[slot]++;
+    }
+
+    /**
+     * Check if a slot has a task waiting to run
+     * @param slot the slot to check
+     * @return true if the slot has a task
+     */
+    public synchronized boolean isScheduled(int slot) {
+        return m_slots[slot] != null;
+    }
+
+    /**
+     * Scheduler thread main loop. The lock is only held while looking for a
+     * due task and putting it back afterwards; tasks run without it so they
+     * never hold up the robot loop calling schedule() or cancel().
+     */
+    public void run() {
+        while (true) {
+            Task task = null;
+            int slot = 0;
+            int version = 0;
+            long now;
+
+            synchronized (this) {
+                now = Utility.getFPGATime();
+                long next = Long.MAX_VALUE;
+                for (int i = 0; i < m_slotCount; i++) {
+                    Task t = m_slots[i];
+                    if (t == null)
+                        continue;
+
+                    if (now >= t.m_deadline) {
+                        // Clear the slot first so the task can schedule a replacement
+                        task = t;
+                        slot = i;
+                        version = m_versions[i];
+                        m_slots[i] = null;
+                        break;
+                    }
+                    if (t.m_deadline < next)
+                        next = t.m_deadline;
+                }
+
+                if (task == null) {
+                    // Sleep until the next deadline, or until a new task is scheduled
+                    long sleep = kMaxSleep;
+                    if (next != Long.MAX_VALUE)
+                        sleep = Math.min(kMaxSleep, (next - now + 999) / 1000);
+                    try {
+                        wait(sleep);
+                    } catch (InterruptedException e) {
+                    }
+                    continue;
+                }
+            }
+
+            boolean again = false;
+            try {
+                again = task.run();
+            } catch (RuntimeException e) {
+                Logger.error("TaskScheduler#run", m_names[slot] + ": " + e.toString());
+            }
+
+            synchronized (this) {
+                // Don't put the task back if the slot was rescheduled or cancelled while it ran
+                if (again && task.m_period > 0 && m_versions[slot] == version) {
+                    task.m_deadline = now + task.m_period;
+                    m_slots[slot] = task;
+                }
+            }
+        }
+    }
+}
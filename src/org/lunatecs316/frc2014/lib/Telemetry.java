@@ -0,0 +1,179 @@
+package org.lunatecs316.frc2014.lib;
+
+import edu.wpi.first.wpilibj.Utility;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Binary telemetry recorder for logging sensor data at loop rate.
+ * <p>
+ * A telemetry file starts with a schema header listing each channel, and is
+ * followed by fixed-width records:
+ * <pre>
+ *   int   loop index
+ *   long  FPGA timestamp (microseconds)
+ *   short channel id
+ *   byte  payload type
+ *   byte  reserved
+ *   long  payload (double bits, int or boolean)
+ * </pre>
+ * All values are big-endian, matching DataInputStream on the desktop. See
+ * tools/ for the decoder.
+ * @author Domenic Rodriguez
+ */
+public class Telemetry {
+    public static final int kMagic = 0x4C544C4D; // "LTLM"
+    public static final int kVersion = 1;
+    public static final int kRecordSize = 24;
+    public static final int kMaxChannels = 64;
+    /** Size of each of the two in-memory telemetry buffers in bytes */
+    public static final int kBufferSize = 64 * 1024;
+
+    public static final byte kTypeDouble = 0;
+    public static final byte kTypeInt = 1;
+    public static final byte kTypeBoolean = 2;
+
+    /**
+     * A single named stream of values
+     */
+    public static class Channel {
+        private final short m_id;
+        private final byte m_type;
+        private final String m_name;
+
+        private Channel(int id, byte type, String name) {
+            m_id = (short) id;
+            m_type = type;
+            m_name = name;
+        }
+
+        /**
+         * Record a value on this channel
+         * @param value the value to record
+         */
+        public void log(double value) {
+            record(m_id, kTypeDouble, Double.doubleToLongBits(value));
+        }
+
+        /**
+         * Record a value on this channel
+         * @param value the value to record
+         */
+        public void log(int value) {
+            record(m_id, kTypeInt, value);
+        }
+
+        /**
+         * Record a value on this channel
+         * @param value the value to record
+         */
+        public void log(boolean value) {
+            record(m_id, kTypeBoolean, value ? 1 : 0);
+        }
+
+        public String getName() {
+            return m_name;
+        }
+
+        public byte getType() {
+            return m_type;
+        }
+    }
+
+    private static Channel[] channels = new Channel[kMaxChannels];
+    private static int channelCount;
+    private static LogFile records = new LogFile("match", ".tlm", kBufferSize) {
+        protected void writeHeader(DataOutputStream out) throws IOException {
+            Telemetry.writeHeader(out);
+        }
+    };
+    private static byte[] record = new byte[kRecordSize];
+    private static int loopIndex;
+    private static boolean enabled = true;
+
+    /**
+     * Register a new telemetry channel. Channels should be created during
+     * initialization, before any data is written to a file.
+     * @param name the name of the channel
+     * @param type the payload type (kTypeDouble, kTypeInt, or kTypeBoolean)
+     * @return the new channel
+     */
+    public static synchronized Channel addChannel(String name, byte type) {
+        if (channelCount >= kMaxChannels) {
+            Logger.error("Telemetry.addChannel", "Too many channels, ignoring '" + name + "'");
+            return new Channel(-1, type, name);
+        }
+        Channel c = new Channel(channelCount, type, name);
+        channels[channelCount++] = c;
+        return c;
+    }
+
+    /**
+     * Enable or disable telemetry recording
+     * @param e
+     */
+    public static void setEnabled(boolean e) {
+        enabled = e;
+    }
+
+    /**
+     * Mark the start of a new iteration of the robot loop
+     */
+    public static void beginLoop() {
+        loopIndex++;
+    }
+
+    /**
+     * Get the number of records lost because the buffer was full
+     * @return the number of dropped records
+     */
+    public static int getDroppedCount() {
+        return records.getDroppedCount();
+    }
+
+    /**
+     * Encode a record into the buffer
+     */
+    private static synchronized void record(short id, byte type, long payload) {
+        if (!enabled || id < 0)
+            return;
+
+        putInt(0, loopIndex);
+        putLong(4, Utility.getFPGATime());
+        record[12] = (byte) (id >> 8);
+        record[13] = (byte) id;
+        record[14] = type;
+        record[15] = 0;
+        putLong(16, payload);
+        records.write(record, 0, kRecordSize);
+    }
+
+    private static void putInt(int index, int value) {
+        record[index] = (byte) (value >> 24);
+        record[index + 1] = (byte) (value >> 16);
+        record[index + 2] = (byte) (value >> 8);
+        record[index + 3] = (byte) value;
+    }
+
+    private static void putLong(int index, long value) {
+        putInt(index, (int) (value >> 32));
+        putInt(index + 4, (int) value);
+    }
+
+    /**
+     * Write the schema header describing each channel
+     * @param out the stream to write to
+     * @throws IOException if the stream could not be written
+     */
+    private static void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(kMagic);
+        out.writeShort(kVersion);
+        out.writeShort(kRecordSize);
+        out.writeShort(channelCount);
+        for (int i = 0; i < channelCount; i++) {
+            out.writeShort(i);
+            out.writeByte(channels[i].m_type);
+            out.writeUTF(channels[i].m_name);
+        }
+    }
+}
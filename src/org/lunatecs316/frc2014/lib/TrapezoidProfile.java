@@ -0,0 +1,105 @@
+package org.lunatecs316.frc2014.lib;
+
+/**
+ * Generates a velocity- and acceleration-limited setpoint that moves toward
+ * a target, for a PID controller to follow. The setpoint speeds up at the
+ * max acceleration, cruises at the max velocity, and slows down in time to
+ * stop at the target, so the mechanism is never asked to jump to a far away
+ * position all at once.
+ * <p>
+ * The profile is recalculated every step from where the setpoint is now,
+ * so the target can change at any time.
+ * @author Domenic Rodriguez
+ */
+public final class TrapezoidProfile {
+    private double m_maxVelocity;
+    private double m_maxAcceleration;
+    private double m_position;
+    private double m_velocity;
+    private double m_target;
+
+    /**
+     * Create a new profile
+     * @param maxVelocity the max velocity, in units per second
+     * @param maxAcceleration the max acceleration, in units per second squared
+     */
+    public TrapezoidProfile(double maxVelocity, double maxAcceleration) {
+        setLimits(maxVelocity, maxAcceleration);
+    }
+
+    /**
+     * Change the velocity and acceleration limits
+     * @param maxVelocity the max velocity, in units per second
+     * @param maxAcceleration the max acceleration, in units per second squared
+     */
+    public void setLimits(double maxVelocity, double maxAcceleration) {
+        m_maxVelocity = Math.abs(maxVelocity);
+        m_maxAcceleration = Math.abs(maxAcceleration);
+    }
+
+    /**
+     * Restart the profile from a position, at rest
+     * @param position the current position of the mechanism
+     */
+    public void reset(double position) {
+        m_position = m_target = position;
+        m_velocity = 0.0;
+    }
+
+    /**
+     * Advance the setpoint by one step
+     * @param target the final position
+     * @param dt the time since the last step, in seconds
+     * @return the new setpoint
+     */
+    public double update(double target, double dt) {
+        m_target = target;
+        double error = target - m_position;
+        double direction = (error < 0) ? -1.0 : 1.0;
+
+        // Fastest we can be going and still stop at the target
+        double stopVelocity = Math.sqrt(2.0 * m_maxAcceleration * Math.abs(error));
+        double desired = direction * Math.min(m_maxVelocity, stopVelocity);
+
+        // Change speed no faster than the acceleration limit
+        double maxChange = m_maxAcceleration * dt;
+        double change = desired - m_velocity;
+        if (change > maxChange)
+            change = maxChange;
+        else if (change < -maxChange)
+            change = -maxChange;
+        m_velocity += change;
+        m_position += m_velocity * dt;
+
+        // Don't step past the target
+        if ((target - m_position) * direction <= 0) {
+            m_position = target;
+            m_velocity = 0.0;
+        }
+        return m_position;
+    }
+
+    /**
+     * Get the current setpoint
+     * @return the setpoint position
+     */
+    public double getPosition() {
+        return m_position;
+    }
+
+    /**
+     * Get the current setpoint velocity
+     * @return the setpoint velocity, in units per second
+     */
+    public double getVelocity() {
+        return m_velocity;
+    }
+
+    /**
+     * Check if the setpoint has reached the target
+     * @return true if the setpoint is at the target and stopped
+     */
+    public boolean isFinished() {
+        return m_position == m_target && m_velocity == 0.0;
+    }
+}
@@ -0,0 +1,83 @@
+package org.lunatecs316.frc2014.lib;
+
+/**
+ * Steering response curve for cheesy drive. The steering input is passed
+ * through the function sin(pi/2 * k * x) / sin(pi/2 * k) three times, which
+ * makes the robot less sensitive to small movements of the wheel. The
+ * composed curve is stored in a {@link LookupTable} and only recomputed when
+ * the non-linearity k changes.
+ * @author Domenic Rodriguez
+ */
+public class TurnCurve extends LookupTable {
+    /** Number of samples between 0 and 1; the curve is odd, so negative inputs are mirrored */
+    public static final int kTableSize = 256;
+    /** Number of times the sine function is applied */
+    public static final int kPasses = 3;
+
+    private double m_nonLinearity;
+
+    /**
+     * Create a new turn curve
+     * @param nonLinearity the wheel non-linearity (0 to 1)
+     */
+    public TurnCurve(double nonLinearity) {
+        super(0.0, 1.0, kTableSize);
+        m_nonLinearity = nonLinearity;
+        rebuild();
+    }
+
+    /**
+     * Change the non-linearity of the curve. The table is only rebuilt if the
+     * value actually changed.
+     * @param nonLinearity the wheel non-linearity (0 to 1)
+     */
+    public void setNonLinearity(double nonLinearity) {
+        if (nonLinearity != m_nonLinearity) {
+            m_nonLinearity = nonLinearity;
+            rebuild();
+        }
+    }
+
+    /**
+     * Get the current non-linearity
+     * @return the wheel non-linearity
+     */
+    public double getNonLinearity() {
+        return m_nonLinearity;
+    }
+
+    /**
+     * Apply the curve to a steering value
+     * @param turn the raw steering value (-1 to 1)
+     * @return the shaped steering value
+     */
+    public double apply(double turn) {
+        return (turn < 0) ? -get(-turn) : get(turn);
+    }
+
+    /**
+     * Apply the curve without the lookup table. This is the original
+     * calculation, kept for checking the accuracy of the table.
+     * @param turn the raw steering value
+     * @param nonLinearity the wheel non-linearity
+     * @return the shaped steering value
+     */
+    public static double calculate(double turn, double nonLinearity) {
+        // With no non-linearity the curve is a straight line
+        if (nonLinearity <= 0.0)
+            return turn;
+
+        double scale = Math.PI / 2.0 * nonLinearity;
+        double denominator = Math.sin(scale);
+        for (int i = 0; i < kPasses; i++)
+            turn = Math.sin(scale * turn) / denominator;
+        return turn;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    protected double compute(double x) {
+        return calculate(x, m_nonLinearity);
+    }
+}
@@ -11,6 +11,8 @@ public class XboxController extends EnhancedJoystick {
     public static final Button ButtonY = new Button(4);
     public static final Button LeftBumper = new Button(5);
     public static final Button RightBumper = new Button(6);
+    public static final Button Back = new Button(7);
+    public static final Button Start = new Button(8);
     
     public static class Button {
         private int number;
@@ -0,0 +1,27 @@
+package org.lunatecs316.frc2014.lib.filter;
+
+/**
+ * Interface for sensor filters. Filters are fed one sample per loop and
+ * never allocate memory after they are created.
+ * @author Domenic Rodriguez
+ */
+public interface Filter {
+    /**
+     * Add a new sample to the filter
+     * @param value the raw sample
+     * @return the new filtered value
+     */
+    public double update(double value);
+
+    /**
+     * Get the most recent filtered value
+     * @return the filtered value
+     */
+    public double get();
+
+    /**
+     * Clear the filter's history. The next sample will be passed straight
+     * through.
+     */
+    public void reset();
+}
@@ -0,0 +1,46 @@
+package org.lunatecs316.frc2014.lib.filter;
+
+/**
+ * Runs a sample through several filters in order, so filters can be
+ * combined for each sensor (for example, outlier rejection followed by a
+ * median).
+ * @author Domenic Rodriguez
+ */
+public class FilterChain implements Filter {
+    private Filter[] m_filters;
+    private double m_output;
+
+    /**
+     * Create a new filter chain
+     * @param filters the filters to apply, first to last
+     */
+    public FilterChain(Filter[] filters) {
+        m_filters = filters;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public double update(double value) {
+        for (int i = 0; i < m_filters.length; i++)
+            value = m_filters[i].update(value);
+        m_output = value;
+        return m_output;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public double get() {
+        return m_output;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void reset() {
+        for (int i = 0; i < m_filters.length; i++)
+            m_filters[i].reset();
+        m_output = 0.0;
+    }
+}
@@ -0,0 +1,66 @@
+package org.lunatecs316.frc2014.lib.filter;
+
+/**
+ * First-order IIR low pass filter. Each new sample moves the output part of
+ * the way toward it: output += alpha * (sample - output).
+ * @author Domenic Rodriguez
+ */
+public class LowPassFilter implements Filter {
+    private double m_alpha;
+    private double m_output;
+    private boolean m_primed;
+
+    /**
+     * Create a new low pass filter
+     * @param alpha how much of each new sample to use, from 0 (ignore new
+     * samples) to 1 (no filtering)
+     */
+    public LowPassFilter(double alpha) {
+        setAlpha(alpha);
+    }
+
+    /**
+     * Create a new low pass filter from a time constant
+     * @param timeConstant the filter time constant, in seconds
+     * @param period the time between samples, in seconds
+     */
+    public LowPassFilter(double timeConstant, double period) {
+        this(period / (timeConstant + period));
+    }
+
+    /**
+     * Change the filter strength
+     * @param alpha how much of each new sample to use (0 to 1)
+     */
+    public void setAlpha(double alpha) {
+        m_alpha = Math.max(0.0, Math.min(1.0, alpha));
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public double update(double value) {
+        if (m_primed) {
+            m_output += m_alpha * (value - m_output);
+        } else {
+            m_output = value;
+            m_primed = true;
+        }
+        return m_output;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public double get() {
+        return m_output;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void reset() {
+        m_primed = false;
+        m_output = 0.0;
+    }
+}
@@ -0,0 +1,66 @@
+package org.lunatecs316.frc2014.lib.filter;
+
+/**
+ * Outputs the median of the last few samples. Removes single-sample spikes
+ * without smearing out real steps the way an average does.
+ * @author Domenic Rodriguez
+ */
+public class MedianFilter implements Filter {
+    private double[] m_samples;
+    private double[] m_sorted;
+    private int m_next;
+    private int m_count;
+    private double m_output;
+
+    /**
+     * Create a new median filter
+     * @param size the number of samples to take the median of
+     */
+    public MedianFilter(int size) {
+        m_samples = new double[size];
+        m_sorted = new double[size];
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public double update(double value) {
+        m_samples[m_next] = value;
+        m_next = (m_next + 1) % m_samples.length;
+        if (m_count < m_samples.length)
+            m_count++;
+
+        // Insertion sort; the window is small
+        for (int i = 0; i < m_count; i++) {
+            double sample = m_samples[i];
+            int j = i - 1;
+            while (j >= 0 && m_sorted[j] > sample) {
+                m_sorted[j + 1] = m_sorted[j];
+                j--;
+            }
+            m_sorted[j + 1] = sample;
+        }
+
+        int middle = m_count / 2;
+        if (m_count % 2 == 1)
+            m_output = m_sorted[middle];
+        else
+            m_output = (m_sorted[middle - 1] + m_sorted[middle]) / 2;
+        return m_output;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public double get() {
+        return m_output;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void reset() {
+        m_next = m_count = 0;
+        m_output = 0.0;
+    }
+}
@@ -0,0 +1,60 @@
+package org.lunatecs316.frc2014.lib.filter;
+
+/**
+ * Outputs the average of the last few samples
+ * @author Domenic Rodriguez
+ */
+public class MovingAverageFilter implements Filter {
+    private double[] m_samples;
+    private int m_next;
+    private int m_count;
+    private double m_sum;
+    private double m_output;
+
+    /**
+     * Create a new moving average filter
+     * @param size the number of samples to average
+     */
+    public MovingAverageFilter(int size) {
+        m_samples = new double[size];
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public double update(double value) {
+        if (m_count < m_samples.length)
+            m_count++;
+        else
+            m_sum -= m_samples[m_next];
+
+        m_samples[m_next] = value;
+        m_sum += value;
+        m_next = (m_next + 1) % m_samples.length;
+
+        // Recalculate the sum once per lap so rounding errors can't build up
+        if (m_next == 0) {
+            m_sum = 0.0;
+            for (int i = 0; i < m_count; i++)
+                m_sum += m_samples[i];
+        }
+
+        m_output = m_sum / m_count;
+        return m_output;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public double get() {
+        return m_output;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void reset() {
+        m_next = m_count = 0;
+        m_sum = m_output = 0.0;
+    }
+}
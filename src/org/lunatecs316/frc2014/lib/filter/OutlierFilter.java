@@ -0,0 +1,66 @@
+package org.lunatecs316.frc2014.lib.filter;
+
+/**
+ * Throws away samples that jump too far from the last good sample, holding
+ * the last good value instead. If the jumps keep happening the new value is
+ * accepted, so a real change still gets through after a few loops.
+ * @author Domenic Rodriguez
+ */
+public class OutlierFilter implements Filter {
+    private double m_maxChange;
+    private int m_maxRejected;
+    private int m_rejected;
+    private int m_totalRejected;
+    private double m_output;
+    private boolean m_primed;
+
+    /**
+     * Create a new outlier filter
+     * @param maxChange the largest change allowed between samples
+     * @param maxRejected how many samples in a row can be thrown away before
+     * the new value is accepted
+     */
+    public OutlierFilter(double maxChange, int maxRejected) {
+        m_maxChange = maxChange;
+        m_maxRejected = maxRejected;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public double update(double value) {
+        if (m_primed && Math.abs(value - m_output) > m_maxChange && m_rejected < m_maxRejected) {
+            m_rejected++;
+            m_totalRejected++;
+            return m_output;
+        }
+        m_rejected = 0;
+        m_primed = true;
+        m_output = value;
+        return m_output;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public double get() {
+        return m_output;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void reset() {
+        m_primed = false;
+        m_rejected = 0;
+        m_output = 0.0;
+    }
+
+    /**
+     * Get the number of samples thrown away since the filter was created
+     * @return the number of rejected samples
+     */
+    public int getRejectedCount() {
+        return m_totalRejected;
+    }
+}
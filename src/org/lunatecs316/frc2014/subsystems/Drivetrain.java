@@ -2,7 +2,9 @@ package org.lunatecs316.frc2014.subsystems;
 
 import edu.wpi.first.wpilibj.CounterBase;
 import edu.wpi.first.wpilibj.DoubleSolenoid;
+import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.Encoder;
+import edu.wpi.first.wpilibj.PIDSource;
 import edu.wpi.first.wpilibj.RobotDrive;
 import edu.wpi.first.wpilibj.Solenoid;
 import edu.wpi.first.wpilibj.Ultrasonic;
@@ -11,9 +13,22 @@ import edu.wpi.first.wpilibj.livewindow.LiveWindow;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import org.lunatecs316.frc2014.Constants;
 import org.lunatecs316.frc2014.RobotMap;
+import org.lunatecs316.frc2014.lib.CachedDoubleSolenoid;
+import org.lunatecs316.frc2014.lib.CachedSolenoid;
+import org.lunatecs316.frc2014.lib.CachedSpeedController;
 import org.lunatecs316.frc2014.lib.Gyro;
+import org.lunatecs316.frc2014.lib.HeadingFilter;
 import org.lunatecs316.frc2014.lib.IterativePIDController;
+import org.lunatecs316.frc2014.lib.IterativeTimer;
 import org.lunatecs316.frc2014.lib.Logger;
+import org.lunatecs316.frc2014.lib.Odometry;
+import org.lunatecs316.frc2014.lib.Telemetry;
+import org.lunatecs316.frc2014.lib.TrapezoidProfile;
+import org.lunatecs316.frc2014.lib.TurnCurve;
+import org.lunatecs316.frc2014.lib.filter.Filter;
+import org.lunatecs316.frc2014.lib.filter.FilterChain;
+import org.lunatecs316.frc2014.lib.filter.MedianFilter;
+import org.lunatecs316.frc2014.lib.filter.OutlierFilter;
 import org.lunatecs316.frc2014.lib.Util;
 
 /**
@@ -21,17 +36,28 @@ import org.lunatecs316.frc2014.lib.Util;
  * @author Domenic Rodriguez
  */
 public class Drivetrain implements Subsystem {
+    /** Longest time step used for the motion profile, in seconds */
+    private static final double kMaxProfileStep = 0.1;
+    /** Largest motor output that still counts as stopped */
+    private static final double kStoppedOutput = 0.01;
     private static Drivetrain instance;
 
     // Drive Motors
-    private Victor frontLeft = new Victor(RobotMap.FrontLeftMotor);
-    private Victor frontRight = new Victor(RobotMap.FrontRightMotor);
-    private Victor rearLeft = new Victor(RobotMap.RearLeftMotor);
-    private Victor rearRight = new Victor(RobotMap.RearRightMotor);
+    private Victor frontLeftMotor = new Victor(RobotMap.FrontLeftMotor);
+    private Victor frontRightMotor = new Victor(RobotMap.FrontRightMotor);
+    private Victor rearLeftMotor = new Victor(RobotMap.RearLeftMotor);
+    private Victor rearRightMotor = new Victor(RobotMap.RearRightMotor);
+
+    // Outputs, only written to the hardware when they change
+    private CachedSpeedController frontLeft = new CachedSpeedController("Drivetrain.frontLeft", frontLeftMotor);
+    private CachedSpeedController frontRight = new CachedSpeedController("Drivetrain.frontRight", frontRightMotor);
+    private CachedSpeedController rearLeft = new CachedSpeedController("Drivetrain.rearLeft", rearLeftMotor);
+    private CachedSpeedController rearRight = new CachedSpeedController("Drivetrain.rearRight", rearRightMotor);
     private RobotDrive driveMotors = new RobotDrive(frontLeft, rearLeft, frontRight, rearRight);
-    private Solenoid shiftingSolenoid = new Solenoid(RobotMap.ShiftingSolenoid);
-    private DoubleSolenoid catchingAidSolenoid = new DoubleSolenoid(RobotMap.CatchingAidForward,
-                                                                    RobotMap.CatchingAidReverse);
+    private CachedSolenoid shiftingSolenoid = new CachedSolenoid("Drivetrain.shifter",
+            new Solenoid(RobotMap.ShiftingSolenoid));
+    private CachedDoubleSolenoid catchingAidSolenoid = new CachedDoubleSolenoid("Drivetrain.catchingAid",
+            new DoubleSolenoid(RobotMap.CatchingAidForward, RobotMap.CatchingAidReverse));
     // Sensors
     private Encoder leftEncoder = new Encoder(RobotMap.LeftDriveEncoderA, RobotMap.LeftDriveEncoderB,
                                               false, CounterBase.EncodingType.k4X);
@@ -39,16 +65,66 @@ public class Drivetrain implements Subsystem {
                                                false, CounterBase.EncodingType.k4X);
     private Gyro gyro = new Gyro(RobotMap.Gyro);
     private Ultrasonic rangeFinder = new Ultrasonic(RobotMap.RangeFinderPing, RobotMap.RangeFinderEcho);
+    private SensorFrame frame = SensorFrame.getInstance();
+
+    // Throw away missed echoes, then smooth out what's left
+    private Filter rangeFinderFilter = new FilterChain(new Filter[] {
+        new OutlierFilter(24.0, 5), new MedianFilter(5)
+    });
 
     // PID Controllers
     private IterativePIDController distanceController = new IterativePIDController(Constants.DrivetrainDistancePLow.getValue(),
             Constants.DrivetrainDistanceILow.getValue(), Constants.DrivetrainDistanceDLow.getValue());
+    private IterativePIDController profileController = new IterativePIDController(Constants.DrivetrainProfileP.getValue(),
+            Constants.DrivetrainProfileI.getValue(), Constants.DrivetrainProfileD.getValue());
     private IterativePIDController angleController = new IterativePIDController(Constants.DrivetrainAngleP.getValue(),
             Constants.DrivetrainAngleI.getValue(), Constants.DrivetrainAngleD.getValue());
+    private TrapezoidProfile distanceProfile = new TrapezoidProfile(Constants.DrivetrainMaxVelocity.getValue(),
+            Constants.DrivetrainMaxAcceleration.getValue());
+    private IterativeTimer profileTimer = new IterativeTimer();
+
+    // Position tracking
+    private Odometry odometry = new Odometry(0.05, 0.02);
+    private int lastLeftEncoder;
+    private int lastRightEncoder;
+    private double lastGyroAngle;
+    private boolean gyroCalibrated;
+
+    // Heading from the gyro, corrected by the encoders
+    private HeadingFilter headingFilter = new HeadingFilter(Constants.DrivetrainTrackWidth.getValue(),
+            Constants.HeadingGyroWeight.getValue(), Constants.HeadingMaxTurnRate.getValue(),
+            Constants.HeadingMaxSpeed.getValue());
+    private long lastFrameTime = -1;
+    private PIDSource headingSource = new PIDSource() {
+        public double pidGet() {
+            return headingFilter.getHeading();
+        }
+    };
+    private long stationaryTime = -1;
+
+    // Steering response for cheesy drive
+    private TurnCurve turnCurve = new TurnCurve(Constants.WheelNonLinearity.getValue());
+
+    // Telemetry
+    private Telemetry.Channel leftEncoderChannel = Telemetry.addChannel("Drivetrain.leftEncoder", Telemetry.kTypeInt);
+    private Telemetry.Channel rightEncoderChannel = Telemetry.addChannel("Drivetrain.rightEncoder", Telemetry.kTypeInt);
+    private Telemetry.Channel gyroChannel = Telemetry.addChannel("Drivetrain.gyro", Telemetry.kTypeDouble);
+    private Telemetry.Channel rangeFinderChannel = Telemetry.addChannel("Drivetrain.rangeFinder", Telemetry.kTypeDouble);
+    private Telemetry.Channel rangeFinderRawChannel = Telemetry.addChannel("Drivetrain.rangeFinderRaw", Telemetry.kTypeDouble);
+    private Telemetry.Channel leftOutputChannel = Telemetry.addChannel("Drivetrain.leftOutput", Telemetry.kTypeDouble);
+    private Telemetry.Channel rightOutputChannel = Telemetry.addChannel("Drivetrain.rightOutput", Telemetry.kTypeDouble);
+    private Telemetry.Channel highGearChannel = Telemetry.addChannel("Drivetrain.highGear", Telemetry.kTypeBoolean);
+    private Telemetry.Channel poseXChannel = Telemetry.addChannel("Drivetrain.poseX", Telemetry.kTypeDouble);
+    private Telemetry.Channel poseYChannel = Telemetry.addChannel("Drivetrain.poseY", Telemetry.kTypeDouble);
+    private Telemetry.Channel poseHeadingChannel = Telemetry.addChannel("Drivetrain.poseHeading", Telemetry.kTypeDouble);
+    private Telemetry.Channel headingChannel = Telemetry.addChannel("Drivetrain.heading", Telemetry.kTypeDouble);
 
     private double startAngle;
     private boolean manualControl;
     private boolean atTarget;
+    private long driveStartTime;
+    private long inToleranceTime;
+    private double settleTime;
     private boolean highGear;
 
     /**
@@ -85,25 +161,111 @@ public class Drivetrain implements Subsystem {
         // Setup range finder
         rangeFinder.setAutomaticMode(true);
 
+        // Watch for changes to our PID gains and steering curve
+        Constants.addListener(this, new Constants.Constant[] {
+            Constants.DrivetrainDistancePLow, Constants.DrivetrainDistanceILow, Constants.DrivetrainDistanceDLow,
+            Constants.DrivetrainDistancePHigh, Constants.DrivetrainDistanceIHigh, Constants.DrivetrainDistanceDHigh,
+            Constants.DrivetrainAngleP, Constants.DrivetrainAngleI, Constants.DrivetrainAngleD,
+            Constants.DrivetrainProfileP, Constants.DrivetrainProfileI, Constants.DrivetrainProfileD,
+            Constants.DrivetrainMaxVelocity, Constants.DrivetrainMaxAcceleration,
+            Constants.DrivetrainTrackWidth, Constants.HeadingGyroWeight, Constants.HeadingMaxTurnRate,
+            Constants.HeadingMaxSpeed, Constants.WheelNonLinearity
+        });
+
         // Setup LiveWindow for test mode
-        LiveWindow.addActuator("Drivetrain", "frontLeft", frontLeft);
-        LiveWindow.addActuator("Drivetrain", "rearLeft", rearLeft);
-        LiveWindow.addActuator("Drivetrain", "frontRight", frontRight);
-        LiveWindow.addActuator("Drivetrain", "rearRight", rearRight);
+        LiveWindow.addActuator("Drivetrain", "frontLeft", frontLeftMotor);
+        LiveWindow.addActuator("Drivetrain", "rearLeft", rearLeftMotor);
+        LiveWindow.addActuator("Drivetrain", "frontRight", frontRightMotor);
+        LiveWindow.addActuator("Drivetrain", "rearRight", rearRightMotor);
         LiveWindow.addSensor("Drivetrain", "leftEncoder", leftEncoder);
         LiveWindow.addSensor("Drivetrain", "rightEncoder", rightEncoder);
         LiveWindow.addSensor("Drivetrain", "gyro", gyro);
         LiveWindow.addSensor("Drivetrain", "rangeFinder", rangeFinder);
     }
 
+    /**
+     * @inheritDoc
+     */
+    public void updateSensors() {
+        // Only calibrate while disabled; the robot could be moving otherwise
+        if (DriverStation.getInstance().isDisabled())
+            gyro.updateCalibration();
+        else if (gyro.abortCalibration())
+            Logger.warning("Drivetrain#updateSensors", "Robot enabled during gyro calibration; restarting once disabled");
+
+        frame.leftEncoder = leftEncoder.get();
+        frame.rightEncoder = rightEncoder.get();
+        frame.leftEncoderRate = leftEncoder.getRate();
+        frame.rightEncoderRate = rightEncoder.getRate();
+        frame.gyroAngle = gyro.getAngle();
+        frame.rangeFinderRaw = rangeFinder.getRangeInches();
+
+        rangeFinderFilter.update(frame.rangeFinderRaw);
+
+        // The angle jumps when calibration starts or finishes; don't count that as turning
+        if (gyro.isCalibrated() != gyroCalibrated) {
+            gyroCalibrated = !gyroCalibrated;
+            lastGyroAngle = frame.gyroAngle;
+            if (gyroCalibrated)
+                Logger.info("Drivetrain#updateSensors", "Gyro calibration complete!");
+        }
+        gyro.updateBias(isStationary());
+
+        // Update the pose from how far each side moved since the last loop
+        int left = frame.leftEncoder;
+        int right = frame.rightEncoder;
+        double angle = frame.gyroAngle;
+        double countsPerInch = Constants.DrivetrainCountsPerInch.getValue();
+        double leftDistance = (left - lastLeftEncoder) / countsPerInch;
+        double rightDistance = (right - lastRightEncoder) / countsPerInch;
+        odometry.update((leftDistance + rightDistance) / 2.0, angle - lastGyroAngle);
+        long now = frame.getTimestamp();
+        if (gyroCalibrated && lastFrameTime >= 0)
+            headingFilter.update(angle - lastGyroAngle, leftDistance, rightDistance, (now - lastFrameTime) * 1e-6);
+        lastFrameTime = now;
+        lastLeftEncoder = left;
+        lastRightEncoder = right;
+        lastGyroAngle = angle;
+    }
+
     /**
      * @inheritDoc
      */
     public void updateSmartDashboard() {
-        SmartDashboard.putNumber("LeftEncoder", leftEncoder.get());
-        SmartDashboard.putNumber("RightEncoder", rightEncoder.get());
-        SmartDashboard.putNumber("Gyro", gyro.getAngle());
-        SmartDashboard.putNumber("Range Finder", rangeFinder.getRangeInches());
+        SmartDashboard.putNumber("LeftEncoder", frame.leftEncoder);
+        SmartDashboard.putNumber("RightEncoder", frame.rightEncoder);
+        SmartDashboard.putNumber("Gyro", frame.gyroAngle);
+        SmartDashboard.putNumber("Heading", headingFilter.getHeading());
+        SmartDashboard.putBoolean("Gyro Calibrated", gyroCalibrated);
+        SmartDashboard.putNumber("Gyro Calibration Progress", gyro.getCalibrationProgress());
+        SmartDashboard.putNumber("Gyro Offset", gyro.getOffset());
+        SmartDashboard.putNumber("Range Finder", getRangeFinderDistance());
+        SmartDashboard.putNumber("Drive Settle Time", settleTime);
+        SmartDashboard.putNumber("Pose X", odometry.getX());
+        SmartDashboard.putNumber("Pose Y", odometry.getY());
+        SmartDashboard.putNumber("Pose Heading", odometry.getHeading());
+        SmartDashboard.putNumber("Pose Variance X", odometry.getVarianceX());
+        SmartDashboard.putNumber("Pose Variance Y", odometry.getVarianceY());
+        SmartDashboard.putNumber("Pose Covariance XY", odometry.getCovarianceXY());
+        SmartDashboard.putNumber("Pose Variance Heading", odometry.getVarianceHeading());
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void updateTelemetry() {
+        leftEncoderChannel.log(frame.leftEncoder);
+        rightEncoderChannel.log(frame.rightEncoder);
+        gyroChannel.log(frame.gyroAngle);
+        rangeFinderChannel.log(getRangeFinderDistance());
+        rangeFinderRawChannel.log(frame.rangeFinderRaw);
+        leftOutputChannel.log(frontLeft.get());
+        rightOutputChannel.log(frontRight.get());
+        highGearChannel.log(shiftingSolenoid.get());
+        poseXChannel.log(odometry.getX());
+        poseYChannel.log(odometry.getY());
+        poseHeadingChannel.log(odometry.getHeading());
+        headingChannel.log(headingFilter.getHeading());
     }
 
     /**
@@ -117,8 +279,18 @@ public class Drivetrain implements Subsystem {
             distanceController.setPID(Constants.DrivetrainDistancePLow.getValue(),
                 Constants.DrivetrainDistanceILow.getValue(), Constants.DrivetrainDistanceDLow.getValue());
         }
+        profileController.setPID(Constants.DrivetrainProfileP.getValue(),
+            Constants.DrivetrainProfileI.getValue(), Constants.DrivetrainProfileD.getValue());
         angleController.setPID(Constants.DrivetrainAngleP.getValue(),
             Constants.DrivetrainAngleI.getValue(), Constants.DrivetrainAngleD.getValue());
+        distanceProfile.setLimits(Constants.DrivetrainMaxVelocity.getValue(),
+            Constants.DrivetrainMaxAcceleration.getValue());
+        headingFilter.setTrackWidth(Constants.DrivetrainTrackWidth.getValue());
+        headingFilter.setGyroWeight(Constants.HeadingGyroWeight.getValue());
+        headingFilter.setMaxTurnRate(Constants.HeadingMaxTurnRate.getValue());
+        headingFilter.setMaxSpeed(Constants.HeadingMaxSpeed.getValue());
+        if (Constants.WheelNonLinearity.hasChanged())
+            turnCurve.setNonLinearity(Constants.WheelNonLinearity.getValue());
     }
 
     /**
@@ -140,6 +312,17 @@ public class Drivetrain implements Subsystem {
         driveMotors.arcadeDrive(move, turn);
     }
 
+    /**
+     * Tank-style driving. Uses the same direction convention as arcadeDrive,
+     * and the outputs are applied as given, without squaring.
+     * @param left the left side output
+     * @param right the right side output
+     */
+    public void tankDrive(double left, double right) {
+        manualControl = true;
+        driveMotors.setLeftRightMotorOutputs(left, right);
+    }
+
     /**
      * Custom drive code based on Team 254's algorithms
      * @param throttle forward-reverse movement
@@ -148,13 +331,9 @@ public class Drivetrain implements Subsystem {
     public void cheesyDrive(double throttle, double turn) {
         // Negate throttle to remain consistent with Joysticks
         throttle = -throttle;
-        
-        turn = Math.sin(((Math.PI)/2.0) * Constants.WheelNonLinearity.getValue() * turn) /
-                Math.sin(((Math.PI)/2.0) * Constants.WheelNonLinearity.getValue());
-        turn = Math.sin(((Math.PI)/2.0) * Constants.WheelNonLinearity.getValue() * turn) /
-                Math.sin(((Math.PI)/2.0) * Constants.WheelNonLinearity.getValue());
-        turn = Math.sin(((Math.PI)/2.0) * Constants.WheelNonLinearity.getValue() * turn) /
-                Math.sin(((Math.PI)/2.0) * Constants.WheelNonLinearity.getValue());
+
+        // Apply the steering non-linearity
+        turn = turnCurve.apply(turn);
 
         // Quickturn
         if (Math.abs(throttle) > 0.3)
@@ -191,25 +370,89 @@ public class Drivetrain implements Subsystem {
     public void driveStraight(double speed) {
         if (manualControl) {
             manualControl = false;
-            startAngle = getGyroAngle();
+            startAngle = getHeading();
         }
-        double turn = angleController.run(startAngle, getGyroAngle());
+        double turn = angleController.run(startAngle, headingSource);
         _arcadeDrive(speed, turn);
     }
     
     /**
-     * Drive the robot straight for a specified distance
-     * @param distance the distance to move
+     * Drive the robot straight for a specified distance.
+     * <p>
+     * By default this runs the distance PID on the target, limited to 70%
+     * output. With DrivetrainProfiledDistance set, the robot instead follows
+     * a velocity- and acceleration-limited profile to the target, using
+     * velocity feedforward plus PID on the profiled position, while holding
+     * the starting heading. The profiled drive's gains still need to be
+     * tuned on the robot before it is turned on.
+     * @param distance the distance to move, in encoder counts
      */
     public void driveStraightDistance(double distance) {
+        boolean profiled = Constants.DrivetrainProfiledDistance.getValue() != 0;
         if (manualControl) {
             manualControl = false;
-            startAngle = getGyroAngle();
+            startAngle = getHeading();
             resetEncoders();
+            distanceController.reset();
+            profileController.reset();
+            distanceProfile.reset(0.0);
+            profileTimer.reset();
+            driveStartTime = frame.getTimestamp();
+            inToleranceTime = -1;
+            atTarget = false;
+        }
+
+        double position = getAverageEncoderValue();
+        double rate = getAverageEncoderRate();
+        if (!profiled) {
+            atTarget = (Math.abs(distance - position) < 200);
+            double move = distanceController.run(distance, position, -0.7, 0.7);
+            _arcadeDrive(move, 0.0);
+            return;
+        }
+
+        double dt = Math.min(profileTimer.getValue() / 1000.0, kMaxProfileStep);
+        profileTimer.reset();
+        double setpoint = distanceProfile.update(distance, dt);
+        double velocity = distanceProfile.getVelocity();
+
+        double move = Constants.DrivetrainVelocityFF.getValue() * velocity
+                + Constants.DrivetrainVelocityP.getValue() * (velocity - rate)
+                + profileController.run(setpoint, position);
+        move = Math.max(-1.0, Math.min(1.0, move));
+        double turn = angleController.run(startAngle, headingSource);
+
+        updateDistanceSettle(distance, position, rate);
+
+        // Don't square the inputs; the feedforward needs a linear response
+        driveMotors.arcadeDrive(move, turn, false);
+    }
+
+    /**
+     * Check if a distance drive has arrived. The robot has arrived once it is
+     * within DrivetrainDistanceTolerance and slower than
+     * DrivetrainSettleVelocity for DrivetrainSettleTime.
+     * @param distance the target distance
+     * @param position the current distance
+     * @param rate the current speed
+     */
+    private void updateDistanceSettle(double distance, double position, double rate) {
+        boolean inTolerance = Math.abs(distance - position) < Constants.DrivetrainDistanceTolerance.getValue()
+                && Math.abs(rate) < Constants.DrivetrainSettleVelocity.getValue();
+        if (!inTolerance) {
+            inToleranceTime = -1;
+            atTarget = false;
+            return;
+        }
+
+        long now = frame.getTimestamp();
+        if (inToleranceTime < 0) {
+            inToleranceTime = now;
+        } else if (!atTarget && now - inToleranceTime >= Constants.DrivetrainSettleTime.getValue() * 1000) {
+            atTarget = true;
+            settleTime = (inToleranceTime - driveStartTime) / 1000.0;
+            Logger.Auto.info("Drivetrain#driveStraightDistance", "Arrived at {} in {}ms", distance, settleTime);
         }
-        atTarget = (Math.abs(distance - getAverageEncoderValue()) < 200);
-        double move = distanceController.run(distance, getAverageEncoderValue(), -0.7, 0.7);
-        _arcadeDrive(move, 0.0);
     }
 
     /**
@@ -221,7 +464,7 @@ public class Drivetrain implements Subsystem {
      */
     public void driveToRangeFinderDistance(double distance, double speed) {
         manualControl = false;
-        double current = rangeFinder.getRangeInches();
+        double current = getRangeFinderDistance();
         if (distance > current)
             _arcadeDrive(speed, 0.0);
         else if (distance < current)
@@ -236,10 +479,10 @@ public class Drivetrain implements Subsystem {
      */
     public void turn(double angle) {
         if (manualControl) {
-            startAngle = getGyroAngle();
+            startAngle = getHeading();
             manualControl = false;
         }
-        double turn = angleController.run(startAngle + angle, getGyroAngle());
+        double turn = angleController.run(startAngle + angle, headingSource);
         _arcadeDrive(0.0, turn);
     }
 
@@ -249,25 +492,33 @@ public class Drivetrain implements Subsystem {
      */
     public void turnToAngle(double angle) {
         manualControl = false;
-        double turn = angleController.run(angle, getGyroAngle());
+        double turn = angleController.run(angle, headingSource);
         _arcadeDrive(0.0, turn);
     }
 
     /**
-     * Shift into high gear
+     * Shift into high gear. The distance gains are only changed when the
+     * gear actually changes.
      */
     public void shiftUp() {
-        distanceController.setPID(Constants.DrivetrainDistancePHigh.getValue(),
-                Constants.DrivetrainDistanceIHigh.getValue(), Constants.DrivetrainDistanceDHigh.getValue());
+        if (!highGear) {
+            highGear = true;
+            distanceController.setPID(Constants.DrivetrainDistancePHigh.getValue(),
+                    Constants.DrivetrainDistanceIHigh.getValue(), Constants.DrivetrainDistanceDHigh.getValue());
+        }
         shiftingSolenoid.set(true);
     }
 
     /**
-     * Shift into low gear
+     * Shift into low gear. The distance gains are only changed when the gear
+     * actually changes.
      */
     public void shiftDown() {
-        distanceController.setPID(Constants.DrivetrainDistancePLow.getValue(),
-                Constants.DrivetrainDistanceILow.getValue(), Constants.DrivetrainDistanceDLow.getValue());
+        if (highGear) {
+            highGear = false;
+            distanceController.setPID(Constants.DrivetrainDistancePLow.getValue(),
+                    Constants.DrivetrainDistanceILow.getValue(), Constants.DrivetrainDistanceDLow.getValue());
+        }
         shiftingSolenoid.set(false);
     }
 
@@ -300,7 +551,50 @@ public class Drivetrain implements Subsystem {
      * @return the average between the left and right encoders
      */
     public double getAverageEncoderValue() {
-        return Util.average(leftEncoder.get(), rightEncoder.get());
+        return Util.average(frame.leftEncoder, frame.rightEncoder);
+    }
+
+    /**
+     * Get the average speed of the left and right encoders
+     * @return the average encoder rate, in counts per second
+     */
+    public double getAverageEncoderRate() {
+        return Util.average(frame.leftEncoderRate, frame.rightEncoderRate);
+    }
+
+    /**
+     * Get the robot's x position on the field. At a heading of 0, x is
+     * forward and y is to the right.
+     * @return the x position in inches
+     */
+    public double getPoseX() {
+        return odometry.getX();
+    }
+
+    /**
+     * Get the robot's y position on the field
+     * @return the y position in inches
+     */
+    public double getPoseY() {
+        return odometry.getY();
+    }
+
+    /**
+     * Get the robot's heading on the field
+     * @return the heading in degrees, clockwise
+     */
+    public double getPoseHeading() {
+        return odometry.getHeading();
+    }
+
+    /**
+     * Set the robot's position on the field
+     * @param x the x position in inches
+     * @param y the y position in inches
+     * @param heading the heading in degrees, clockwise
+     */
+    public void resetPose(double x, double y, double heading) {
+        odometry.reset(x, y, heading);
     }
 
     /**
@@ -308,7 +602,23 @@ public class Drivetrain implements Subsystem {
      * @return the gyro angle
      */
     public double getGyroAngle() {
-        return gyro.getAngle();
+        return frame.gyroAngle;
+    }
+
+    /**
+     * Get the robot's heading, from the gyro corrected by the encoders
+     * @return the heading in degrees, clockwise
+     */
+    public double getHeading() {
+        return headingFilter.getHeading();
+    }
+
+    /**
+     * Get the fused heading as a source for PID controllers
+     * @return the heading source
+     */
+    public PIDSource getHeadingSource() {
+        return headingSource;
     }
 
     /**
@@ -316,7 +626,7 @@ public class Drivetrain implements Subsystem {
      * @return distance to the object in front of the range finder (inches)
      */
     public double getRangeFinderDistance() {
-        return rangeFinder.getRangeInches();
+        return rangeFinderFilter.get();
     }
 
     /**
@@ -329,7 +639,7 @@ public class Drivetrain implements Subsystem {
 
     /**
      * Check if we're at the encoder distance target
-     * @return if we've arrived at our target or not
+     * @return if we've arrived and settled at our target or not
      */
     public boolean atTarget() {
         return atTarget;
@@ -340,15 +650,44 @@ public class Drivetrain implements Subsystem {
      */
     public void resetGyro() {
         gyro.reset();
+        frame.gyroAngle = lastGyroAngle = 0.0;
+        headingFilter.reset(0.0);
     }
 
     /**
-     * Recalculate the gyro offset
+     * Start recalculating the gyro offset. The robot keeps running while the
+     * gyro calibrates; the gyro reads 0 until it is done.
      */
     public void reinitGyro() {
         Logger.info("Drivetrain#reinitGyro", "Reinitializing gyro... hold still!");
-        gyro.initGyro();
-        Logger.info("Drivetrain#reinitGyro", "Gyro initialization complete!");
+        gyro.startCalibration();
+    }
+
+    /**
+     * Check if the robot has been sitting still long enough to measure the
+     * gyro drift: the motors are stopped, and both encoders have been slower
+     * than GyroStationaryRate for GyroStationaryTime.
+     * @return true if the robot is stationary
+     */
+    private boolean isStationary() {
+        boolean still = Math.abs(frontLeft.get()) < kStoppedOutput && Math.abs(frontRight.get()) < kStoppedOutput
+                && Math.abs(frame.leftEncoderRate) < Constants.GyroStationaryRate.getValue()
+                && Math.abs(frame.rightEncoderRate) < Constants.GyroStationaryRate.getValue();
+        if (!still) {
+            stationaryTime = -1;
+            return false;
+        }
+        if (stationaryTime < 0)
+            stationaryTime = frame.getTimestamp();
+        return frame.getTimestamp() - stationaryTime >= Constants.GyroStationaryTime.getValue() * 1000;
+    }
+
+    /**
+     * Check if the gyro has finished calibrating
+     * @return true if the gyro angle can be used
+     */
+    public boolean isGyroCalibrated() {
+        return gyroCalibrated;
     }
 
     /**
@@ -357,6 +696,8 @@ public class Drivetrain implements Subsystem {
     public void resetEncoders() {
         leftEncoder.reset();
         rightEncoder.reset();
+        frame.leftEncoder = frame.rightEncoder = 0;
+        lastLeftEncoder = lastRightEncoder = 0;
     }
 
     /**
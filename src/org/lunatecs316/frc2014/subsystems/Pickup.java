@@ -6,7 +6,10 @@ import edu.wpi.first.wpilibj.Talon;
 import edu.wpi.first.wpilibj.livewindow.LiveWindow;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import org.lunatecs316.frc2014.RobotMap;
+import org.lunatecs316.frc2014.lib.CachedDoubleSolenoid;
+import org.lunatecs316.frc2014.lib.CachedSpeedController;
 import org.lunatecs316.frc2014.lib.Logger;
+import org.lunatecs316.frc2014.lib.Telemetry;
 
 /**
  * Pickup subsystem. <br>
@@ -17,9 +20,16 @@ import org.lunatecs316.frc2014.lib.Logger;
 public class Pickup implements Subsystem {
     private static Pickup instance;
 
-    private Talon roller = new Talon(RobotMap.PickupRoller);
-    private DoubleSolenoid solenoid = new DoubleSolenoid(RobotMap.PickupSolenoidForward, RobotMap.PickupSolenoidReverse);
+    private Talon rollerMotor = new Talon(RobotMap.PickupRoller);
+    private DoubleSolenoid pickupSolenoid = new DoubleSolenoid(RobotMap.PickupSolenoidForward, RobotMap.PickupSolenoidReverse);
+    private CachedSpeedController roller = new CachedSpeedController("Pickup.roller", rollerMotor);
+    private CachedDoubleSolenoid solenoid = new CachedDoubleSolenoid("Pickup.solenoid", pickupSolenoid);
     private DigitalInput loweredSwitch = new DigitalInput(RobotMap.PickupLoweredSwitch);
+    private SensorFrame frame = SensorFrame.getInstance();
+
+    // Telemetry
+    private Telemetry.Channel rollerChannel = Telemetry.addChannel("Pickup.roller", Telemetry.kTypeDouble);
+    private Telemetry.Channel loweredChannel = Telemetry.addChannel("Pickup.lowered", Telemetry.kTypeBoolean);
 
     /**
      * Default constructor
@@ -43,11 +53,18 @@ public class Pickup implements Subsystem {
     public void init() {
         Logger.debug("Pickup#init", "Initalizing Pickup");
 
-        LiveWindow.addActuator("Pickup", "Roller", roller);
-        LiveWindow.addActuator("Pickup", "Solenoid", solenoid);
+        LiveWindow.addActuator("Pickup", "Roller", rollerMotor);
+        LiveWindow.addActuator("Pickup", "Solenoid", pickupSolenoid);
         LiveWindow.addSensor("Pickup", "Lowered Switch", loweredSwitch);
     }
 
+    /**
+     * @inheritDoc
+     */
+    public void updateSensors() {
+        frame.pickupLoweredSwitch = loweredSwitch.get();
+    }
+
     /**
      * @inheritDoc
      */
@@ -55,6 +72,14 @@ public class Pickup implements Subsystem {
         SmartDashboard.putBoolean("Pickup Lowered", isLowered());
     }
 
+    /**
+     * @inheritDoc
+     */
+    public void updateTelemetry() {
+        rollerChannel.log(roller.get());
+        loweredChannel.log(isLowered());
+    }
+
     /**
      * @inheritDoc
      */
@@ -96,6 +121,6 @@ public class Pickup implements Subsystem {
      * @return true if pickup is lowered
      */
     public boolean isLowered() {
-        return !loweredSwitch.get();
+        return !frame.pickupLoweredSwitch;
     }
 }
@@ -0,0 +1,79 @@
+package org.lunatecs316.frc2014.subsystems;
+
+import edu.wpi.first.wpilibj.Utility;
+
+/**
+ * Snapshot of the robot's sensors, taken once at the start of each robot
+ * loop. {@link #begin()} stamps the frame, then each subsystem fills in its
+ * own sensors in updateSensors(). The subsystem getters all read from the
+ * frame, so every sensor is only read once per loop and every decision made
+ * in a loop sees the same data.
+ * <p>
+ * The frame is allocated once and reused. Only the robot loop thread should
+ * use it; the shooter's winch task reads its limit switch directly.
+ * @author Domenic Rodriguez
+ */
+public final class SensorFrame {
+    private static SensorFrame instance;
+
+    private long timestamp;
+    private int sequence;
+
+    // Drivetrain
+    int leftEncoder;
+    int rightEncoder;
+    double leftEncoderRate;
+    double rightEncoderRate;
+    double gyroAngle;
+    double rangeFinderRaw;
+
+    // Pickup
+    boolean pickupLoweredSwitch;
+
+    // Shooter
+    double armPositionRaw;
+    boolean loadSwitch;
+    boolean maxSwitch;
+    boolean ballSwitch;
+
+    /**
+     * Default constructor
+     */
+    private SensorFrame() {
+    }
+
+    /**
+     * Get the shared instance
+     * @return the sensor frame
+     */
+    public static SensorFrame getInstance() {
+        if (instance == null)
+            instance = new SensorFrame();
+        return instance;
+    }
+
+    /**
+     * Start a new frame. Call once at the start of the loop, before the
+     * subsystems update their sensors.
+     */
+    public void begin() {
+        timestamp = Utility.getFPGATime();
+        sequence++;
+    }
+
+    /**
+     * Get the time the frame was taken
+     * @return the FPGA time in microseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Get the number of frames taken so far
+     * @return the frame number
+     */
+    public int getSequence() {
+        return sequence;
+    }
+}
@@ -1,20 +1,34 @@
 package org.lunatecs316.frc2014.subsystems;
 
+import com.sun.squawk.microedition.io.FileConnection;
 import edu.wpi.first.wpilibj.AnalogChannel;
 import edu.wpi.first.wpilibj.DigitalInput;
 import edu.wpi.first.wpilibj.DoubleSolenoid;
+import edu.wpi.first.wpilibj.Utility;
 import edu.wpi.first.wpilibj.Victor;
 import edu.wpi.first.wpilibj.livewindow.LiveWindow;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.Vector;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import javax.microedition.io.Connector;
 import org.lunatecs316.frc2014.Constants;
 import org.lunatecs316.frc2014.SamXV;
 import org.lunatecs316.frc2014.RobotMap;
+import org.lunatecs316.frc2014.lib.CachedDoubleSolenoid;
+import org.lunatecs316.frc2014.lib.CachedSpeedController;
+import org.lunatecs316.frc2014.lib.CalibrationTable;
+import org.lunatecs316.frc2014.lib.Histogram;
+import org.lunatecs316.frc2014.lib.InterpolatingTable;
 import org.lunatecs316.frc2014.lib.IterativePIDController;
 import org.lunatecs316.frc2014.lib.IterativeTimer;
 import org.lunatecs316.frc2014.lib.Logger;
+import org.lunatecs316.frc2014.lib.Mailbox;
+import org.lunatecs316.frc2014.lib.TaskScheduler;
+import org.lunatecs316.frc2014.lib.Telemetry;
+import org.lunatecs316.frc2014.lib.TrapezoidProfile;
+import org.lunatecs316.frc2014.lib.filter.Filter;
+import org.lunatecs316.frc2014.lib.filter.MedianFilter;
 
 /**
  * Shooter subsystem
@@ -22,24 +36,112 @@ import org.lunatecs316.frc2014.lib.Logger;
  * @author Domenic Rodriguez
  */
 public class Shooter implements Subsystem {
+    private static final String kShotTableFilename = "ShotTable.txt";
+    /** How often the winch task runs, in microseconds */
+    private static final long kWinchPeriod = 5000;
+    /** Length of one step of ShooterBump, in microseconds */
+    private static final long kBumpStep = 50000;
+    /** Longest time step used for the motion profile, in seconds */
+    private static final double kMaxProfileStep = 0.1;
+    /** How long the arm must stay within tolerance to count as settled, in microseconds */
+    private static final long kSettleHoldTime = 100000;
+    /** Total weight of nearby made shots needed before a calibration point is used */
+    private static final double kCalibrationMinWeight = 1.5;
     private static Shooter instance;
 
-    private Victor winchLeft = new Victor(RobotMap.ShooterWinchLeft);
-    private Victor winchRight = new Victor(RobotMap.ShooterWinchRight);
-    private DoubleSolenoid clutch = new DoubleSolenoid(RobotMap.ShooterClutchForward, RobotMap.ShooterClutchReverse);
+    // Default shot table, used if there is no shot table file
+    private static final double[] kDefaultDistances = {
+        48, 60, 72, 84, 96, 108, 120, 132, 144, 156, 168, 180, 192, 204, 216
+    };
+    private static final double[] kDefaultSetpoints = {
+        1.675, 1.550, 1.450, 1.425, 1.400, 1.400, 1.400, 1.400,
+        1.475, 1.480, 1.525, 1.600, 1.650, 1.700, 1.700
+    };
+
+    private Victor winchLeftMotor = new Victor(RobotMap.ShooterWinchLeft);
+    private Victor winchRightMotor = new Victor(RobotMap.ShooterWinchRight);
+    private DoubleSolenoid clutchSolenoid = new DoubleSolenoid(RobotMap.ShooterClutchForward, RobotMap.ShooterClutchReverse);
+    // The winch task sets these every period; only changes reach the hardware
+    private CachedSpeedController winchLeft = new CachedSpeedController("Shooter.winchLeft", winchLeftMotor);
+    private CachedSpeedController winchRight = new CachedSpeedController("Shooter.winchRight", winchRightMotor);
+    private CachedDoubleSolenoid clutch = new CachedDoubleSolenoid("Shooter.clutch", clutchSolenoid);
     private DigitalInput loadSwitch = new DigitalInput(RobotMap.ShooterLoadSwitch);
     private DigitalInput maxSwitch = new DigitalInput(RobotMap.ShooterMaxSwitch);
     private DigitalInput ballSwitch = new DigitalInput(RobotMap.BallSwitch);
     private AnalogChannel positionPot = new AnalogChannel(RobotMap.ShooterPot);
+    private SensorFrame frame = SensorFrame.getInstance();
     private IterativePIDController positionController = new IterativePIDController(Constants.ShooterPositionP.getValue(),
                 Constants.ShooterPositionI.getValue(), Constants.ShooterPositionD.getValue());
-    private IterativeTimer clutchTimer = new IterativeTimer();
-    private IterativeTimer reloadTimer = new IterativeTimer();
-    private Timer taskTimer = new Timer();
+    private TrapezoidProfile positionProfile = new TrapezoidProfile(Constants.ShooterMaxVelocity.getValue(),
+                Constants.ShooterMaxAcceleration.getValue());
+    private IterativeTimer profileTimer = new IterativeTimer();
+    private Filter armFilter = new MedianFilter(3);
+
+    // Winch and clutch control. Only the winch task, on the scheduler
+    // thread, writes to these actuators. The robot loop sends it commands
+    // through a mailbox, and it reports finished reloads back the same way.
+    private static final int kCommandManual = 0;
+    private static final int kCommandReload = 1;
+    private static final int kCommandBump = 2;
+    private static final int kCommandFire = 3;
+
+    private static final int kStateManual = 0;
+    private static final int kStateReloading = 1;
+    private static final int kStateBumping = 2;
+
+    private TaskScheduler scheduler = TaskScheduler.getInstance();
+    private int winchSlot = scheduler.addSlot("Shooter.winch");
+    private Mailbox commands = new Mailbox();
+    private Mailbox reloads = new Mailbox();
+    private int lastCommand;
+
+    // Only touched by the winch task
+    private int winchState = kStateManual;
+    private double winchSpeed;
+    private boolean clutchReleased;
+    private long clutchEngageTime;
+    private long bumpEndTime;
+    private long reloadStartTime;
+    private long fireTime = -1;
+    private int reloadCommand;
+
+    // Shot cycle timing, in milliseconds
+    private Histogram reloadTimes = new Histogram("Reload time", 0, 5000, 100);
+    private Histogram clutchLatencies = new Histogram("Clutch release latency", 0, 50, 50);
+    private Histogram fireToReadyTimes = new Histogram("Fire to ready time", 0, 6000, 120);
+
+    private TaskScheduler.Task winchTask = new TaskScheduler.Task() {
+        protected boolean run() {
+            updateWinch(Utility.getFPGATime());
+            return true;
+        }
+    };
+
+    // Telemetry
+    private Telemetry.Channel armPositionChannel = Telemetry.addChannel("Shooter.armPosition", Telemetry.kTypeDouble);
+    private Telemetry.Channel armPositionRawChannel = Telemetry.addChannel("Shooter.armPositionRaw", Telemetry.kTypeDouble);
+    private Telemetry.Channel winchChannel = Telemetry.addChannel("Shooter.winch", Telemetry.kTypeDouble);
+    private Telemetry.Channel loadSwitchChannel = Telemetry.addChannel("Shooter.loadSwitch", Telemetry.kTypeBoolean);
+    private Telemetry.Channel maxSwitchChannel = Telemetry.addChannel("Shooter.maxSwitch", Telemetry.kTypeBoolean);
+    private Telemetry.Channel ballSwitchChannel = Telemetry.addChannel("Shooter.ballSwitch", Telemetry.kTypeBoolean);
+    private Telemetry.Channel setpointChannel = Telemetry.addChannel("Shooter.setpoint", Telemetry.kTypeDouble);
+
+    private volatile InterpolatingTable shotTable = new InterpolatingTable(kDefaultDistances, kDefaultSetpoints);
+    // Shot table calibration: one point every foot, slowly forgetting old shots
+    private CalibrationTable calibration = new CalibrationTable(36, 240, 12, 0.95);
+    private int shotsMade;
+    private int shotsMissed;
 
-    private Vector distances = new Vector();
-    private Vector setpoints = new Vector();
     private boolean manualControl;
+    private boolean positionControl;
+    private double setpoint;
+
+    // Settle time measurement for position control
+    private double settleTarget;
+    private long settleStartTime;
+    private long inToleranceTime;
+    private boolean settled;
+    private double settleTime;
 
     /**
      * Default constructor
@@ -63,25 +165,68 @@ public class Shooter implements Subsystem {
     public void init(){
         Logger.debug("Shooter#init", "Initalizing Shooter");
 
-        // Update the setpoint lookup table
-        updateSetpoints();
+        // Start controlling the winch
+        scheduler.schedule(winchSlot, winchTask, 0, kWinchPeriod);
+
+        // Load the setpoint lookup table
+        loadShotTable();
+        Constants.addListener(this, new Constants.Constant[] {
+            Constants.ShooterPositionP, Constants.ShooterPositionI, Constants.ShooterPositionD,
+            Constants.ShooterMaxVelocity, Constants.ShooterMaxAcceleration
+        });
 
         // Setup LiveWindow
-        LiveWindow.addActuator("Shooter", "winchLeft", winchLeft);
-        LiveWindow.addActuator("Shooter", "winchRight", winchRight);
-        LiveWindow.addActuator("Shooter", "clutch", clutch);
+        LiveWindow.addActuator("Shooter", "winchLeft", winchLeftMotor);
+        LiveWindow.addActuator("Shooter", "winchRight", winchRightMotor);
+        LiveWindow.addActuator("Shooter", "clutch", clutchSolenoid);
         LiveWindow.addSensor("Shooter", "loadSwitch", loadSwitch);
         LiveWindow.addSensor("Shooter", "maxSwitch", maxSwitch);
         LiveWindow.addSensor("Shooter", "ballSwitch", ballSwitch);
         LiveWindow.addSensor("Shooter", "positionPot", positionPot);
     }
 
+    /**
+     * @inheritDoc
+     */
+    public void updateSensors() {
+        frame.armPositionRaw = positionPot.getAverageVoltage();
+        frame.loadSwitch = loadSwitch.get();
+        frame.maxSwitch = maxSwitch.get();
+        frame.ballSwitch = ballSwitch.get();
+        armFilter.update(frame.armPositionRaw);
+    }
+
     /**
      * @inheritDoc
      */
     public void updateSmartDashboard() {
         SmartDashboard.putNumber("Arm Position", getArmPosition());
+        SmartDashboard.putNumber("Arm Settle Time", settleTime);
         SmartDashboard.putBoolean("Ball is loaded?", ballIsLoaded());
+        SmartDashboard.putNumber("Calibration Shots Made", shotsMade);
+        SmartDashboard.putNumber("Calibration Shots Missed", shotsMissed);
+        SmartDashboard.putNumber("Reload Time p50", reloadTimes.getPercentile(0.5));
+        SmartDashboard.putNumber("Reload Time p90", reloadTimes.getPercentile(0.9));
+        SmartDashboard.putNumber("Reload Time Max", reloadTimes.getMax());
+        SmartDashboard.putNumber("Clutch Latency p50", clutchLatencies.getPercentile(0.5));
+        SmartDashboard.putNumber("Clutch Latency p90", clutchLatencies.getPercentile(0.9));
+        SmartDashboard.putNumber("Clutch Latency Max", clutchLatencies.getMax());
+        SmartDashboard.putNumber("Fire To Ready p50", fireToReadyTimes.getPercentile(0.5));
+        SmartDashboard.putNumber("Fire To Ready p90", fireToReadyTimes.getPercentile(0.9));
+        SmartDashboard.putNumber("Fire To Ready Max", fireToReadyTimes.getMax());
+    }
+
+    /**
+     * @inheritDoc
+     */
+    public void updateTelemetry() {
+        armPositionChannel.log(getArmPosition());
+        armPositionRawChannel.log(frame.armPositionRaw);
+        setpointChannel.log(setpoint);
+        winchChannel.log(winchLeft.get());
+        loadSwitchChannel.log(atLoadingPosition());
+        maxSwitchChannel.log(atMaxPosition());
+        ballSwitchChannel.log(ballIsLoaded());
     }
 
     /**
@@ -90,53 +235,123 @@ public class Shooter implements Subsystem {
     public void updateConstants() {
         positionController.setPID(Constants.ShooterPositionP.getValue(),
                 Constants.ShooterPositionI.getValue(), Constants.ShooterPositionD.getValue());
-        updateSetpoints();
+        positionProfile.setLimits(Constants.ShooterMaxVelocity.getValue(),
+                Constants.ShooterMaxAcceleration.getValue());
     }
 
     /**
-     * Update the setpoints lookup table
+     * Reload the auto-aim shot table from the file on the cRIO. Each line of
+     * the file holds a distance (inches) and arm setpoint (volts). If the
+     * file is missing or invalid, the current table is kept.
      */
-    private void updateSetpoints() {
-        // Distances
-        distances.removeAllElements();
-        for (int i = 48; i <= 216; i += 12)
-            distances.addElement(new Double(i + Constants.ShooterDistanceOffset.getValue()));
+    public void loadShotTable() {
+        FileConnection file = null;
+        InputStreamReader in = null;
+
+        try {
+            file = (FileConnection) Connector.open("file:///" + kShotTableFilename, Connector.READ);
+            if (!file.exists()) {
+                Logger.info("Shooter#loadShotTable", "No shot table file, using {} built-in points", shotTable.size());
+                return;
+            }
+
+            in = new InputStreamReader(file.openInputStream());
+            InterpolatingTable table = InterpolatingTable.parse(in);
 
-        // Angle setpoints
-        setpoints.removeAllElements();
-        setpoints.addElement(new Double(1.675));
-        setpoints.addElement(new Double(1.550));
-        setpoints.addElement(new Double(1.450));
-        setpoints.addElement(new Double(1.425));
-        setpoints.addElement(new Double(1.400));
-        setpoints.addElement(new Double(1.400));
-        setpoints.addElement(new Double(1.400));
-        setpoints.addElement(new Double(1.400));
-        setpoints.addElement(new Double(1.475));
-        setpoints.addElement(new Double(1.480));
-        setpoints.addElement(new Double(1.525));
-        setpoints.addElement(new Double(1.600));
-        setpoints.addElement(new Double(1.650));
-        setpoints.addElement(new Double(1.700));
-        setpoints.addElement(new Double(1.700));
+            // Swap in the new table all at once
+            shotTable = table;
+            Logger.info("Shooter#loadShotTable", "Loaded {} points from '" + kShotTableFilename + "'", table.size());
+        } catch (IOException e) {
+            Logger.error("Shooter#loadShotTable", "Error reading shot table: " + e.getMessage());
+        } finally {
+            try {
+                if (in != null)
+                    in.close();
+                if (file != null)
+                    file.close();
+            } catch (IOException ex) {
+                Logger.error("Shooter#loadShotTable", "Error closing file");
+            }
+        }
     }
 
     /**
-     * Fire the ball
+     * Save a shot table to the shot table file, replacing the old file
+     * @param table the table to save
+     */
+    private void saveShotTable(InterpolatingTable table) {
+        FileConnection file = null;
+        PrintStream out = null;
+
+        try {
+            file = (FileConnection) Connector.open("file:///" + kShotTableFilename, Connector.READ_WRITE);
+            if (file.exists())
+                file.delete();
+            file.create();
+            out = new PrintStream(file.openOutputStream());
+            out.println("# distance (in), arm setpoint (V)");
+            table.write(out);
+        } catch (IOException e) {
+            Logger.error("Shooter#saveShotTable", "Error writing shot table: " + e.getMessage());
+        } finally {
+            if (out != null)
+                out.close();
+            try {
+                if (file != null)
+                    file.close();
+            } catch (IOException ex) {
+                Logger.error("Shooter#saveShotTable", "Error closing file");
+            }
+        }
+    }
+
+    /**
+     * Record whether a shot went in, for calibrating the shot table. Made
+     * shots are added to the calibration; missed shots are only counted.
+     * @param distance the range finder distance when the shot was taken
+     * @param armPosition the arm position when the shot was taken
+     * @param made true if the shot went in
+     */
+    public void recordShot(double distance, double armPosition, boolean made) {
+        if (made) {
+            shotsMade++;
+            calibration.add(distance - Constants.ShooterDistanceOffset.getValue(),
+                    armPosition - Constants.ShooterAngleOffset.getValue(), 1.0);
+            Logger.Shots.info("Shooter#recordShot", "Made shot: Dist: {} ArmPos: {}", distance, armPosition);
+        } else {
+            shotsMissed++;
+            Logger.Shots.info("Shooter#recordShot", "Missed shot: Dist: {} ArmPos: {}", distance, armPosition);
+        }
+    }
+
+    /**
+     * Replace the shot table with one fit to the made shots, and save it to
+     * the shot table file. Distances without enough made shots keep their
+     * old setpoints.
+     */
+    public void adoptCalibration() {
+        int calibrated = calibration.getCalibratedCount(kCalibrationMinWeight);
+        if (calibrated == 0) {
+            Logger.warning("Shooter#adoptCalibration", "Not enough made shots to calibrate");
+            return;
+        }
+
+        InterpolatingTable table = calibration.refit(shotTable, kCalibrationMinWeight);
+        shotTable = table;
+        saveShotTable(table);
+        Logger.Shots.info("Shooter#adoptCalibration", "Adopted calibrated shot table, {} of {} points calibrated",
+                calibrated, table.size());
+    }
+
+    /**
+     * Fire the ball. The clutch is re-engaged and the shooter reloaded once
+     * ShooterResetTime has passed.
      */
     public void fire() {
         if (ballIsLoaded() || SamXV.manualOverride()) {
-            clutch.set(DoubleSolenoid.Value.kForward);
-            clutchTimer.setExpiration(Constants.ShooterResetTime.getValue());
-            taskTimer.schedule(new TimerTask() {
-                public void run() {
-                    if (clutchTimer.hasExpired()) {
-                        clutch.set(DoubleSolenoid.Value.kReverse);
-                        reload();
-                        cancel();
-                    }
-                }
-            }, 0L, 30);
+            manualControl = false;
+            positionControl = false;
+            sendCommand(kCommandFire, Utility.getFPGATime(), Constants.ShooterResetTime.getValue() * 1000);
         }
     }
 
@@ -145,105 +360,125 @@ public class Shooter implements Subsystem {
      */
     public void reload() {
         manualControl = false;
-        reloadTimer.reset();
-        taskTimer.schedule(new TimerTask() {
-            public void run() {
-                _setWinch(1.0);
-                if (atLoadingPosition() || manualControl) {
-                    _setWinch(0.0);
-                    manualControl = true;
-                    Logger.debug("Shooter#reload", "Reload time: " + reloadTimer.getValue());
-                    cancel();
-                }
-            }
-        }, 0L, 50);
+        positionControl = false;
+        sendCommand(kCommandReload, 0.0, 0.0);
     }
 
     /**
      * Move the shooter up by a tiny bit
      */
     public void bumpUp() {
-        manualControl = false;
-        taskTimer.schedule(new TimerTask() {
-            private int count = 0;
-            public void run() {
-                count++;
-                _setWinch(-0.6);
-                if (count > Constants.ShooterBump.getValue() || manualControl) {
-                    _setWinch(0.0);
-                    cancel();
-                }
-            }
-        }, 0L, 50);
+        bump(-0.6);
     }
 
     /**
      * Move the shooter down by a tiny bit
      */
     public void bumpDown() {
+        bump(0.6);
+    }
+
+    /**
+     * Run the winch for ShooterBump steps and then stop
+     * @param speed the speed of the winch
+     */
+    private void bump(double speed) {
         manualControl = false;
-        taskTimer.schedule(new TimerTask() {
-            private int count = 0;
-            public void run() {
-                count++;
-                _setWinch(0.6);
-                if (count > Constants.ShooterBump.getValue() || manualControl) {
-                    _setWinch(0.0);
-                    cancel();
-                }
-            }
-        }, 0L, 50);
+        positionControl = false;
+        sendCommand(kCommandBump, speed, Constants.ShooterBump.getValue() * kBumpStep);
     }
 
     /**
-     * Set the target position for the shooter arm
+     * Set the target position for the shooter arm. The arm follows a
+     * velocity- and acceleration-limited path to the target rather than
+     * jumping straight to it. Set ShooterMaxVelocity to 0 to disable the
+     * motion profile.
      * @param target
      */
     public void setPosition(double target) {
-        if (manualControl) {
-            manualControl = false;
+        double position = getArmPosition();
+        target += Constants.ShooterAngleOffset.getValue();
+
+        if (!positionControl) {
+            positionControl = true;
             positionController.reset();
+            positionProfile.reset(position);
+            profileTimer.reset();
+            startSettleTime(target);
+        } else if (Math.abs(target - settleTarget) > Constants.ShooterPositionTolerance.getValue()) {
+            startSettleTime(target);
         }
-        double value = positionController.run(target + Constants.ShooterAngleOffset.getValue(),
-                                              positionPot.getAverageVoltage());
-        setWinch(value);
+
+        double dt = Math.min(profileTimer.getValue() / 1000.0, kMaxProfileStep);
+        profileTimer.reset();
+        if (Constants.ShooterMaxVelocity.getValue() > 0)
+            setpoint = positionProfile.update(target, dt);
+        else
+            setpoint = target;
+
+        double value = positionController.run(setpoint, position);
+        updateSettleTime(target, position);
+
+        // Let the operator take over as soon as they stop holding the button
+        manualControl = true;
+        sendCommand(kCommandManual, value, 0.0);
     }
 
     /**
-     * Automatically position the shooter based on the distance to the target
-     * @param distance the distance from the goal
+     * Start timing a move to a new position
+     * @param target the new target position
      */
-    public void autoAim(double distance) {
-        double target = 1.700;
-
-        // Calculate the shooter setpoint
-        Double lowDistance = new Double(-1.0);
-        Double lowSetpoint = new Double(-1.0);
-
-        // Find the target range for the given distance and then interpolate between points
-        for (int i = 0; i < distances.size(); i++)
-        {
-            Double highDistance = (Double) distances.elementAt(i);
-            if (distance < highDistance.doubleValue())
-            {
-                Double highSetpoint = (Double) setpoints.elementAt(i);
-                if (lowDistance.doubleValue() > 0.0)
-                {
-                    double m = (highSetpoint.doubleValue() - lowSetpoint.doubleValue())
-                             / (highDistance.doubleValue() - lowDistance.doubleValue());
-                    target = highSetpoint.doubleValue() + (m * (distance - lowDistance.doubleValue()));
-                }
-                else
-                    target = highSetpoint.doubleValue();
-                break;
-            }
-            else
-            {
-                lowDistance = highDistance;
-                lowSetpoint = (Double) setpoints.elementAt(i);
+    private void startSettleTime(double target) {
+        settleTarget = target;
+        settleStartTime = frame.getTimestamp();
+        inToleranceTime = -1;
+        settled = false;
+    }
+
+    /**
+     * Write a summary of the shot cycle times to the shots log, and start
+     * over so the next summary only covers the shots since this one
+     */
+    public void logStatistics() {
+        reloadTimes.log(Logger.Shots, "Shooter#logStatistics");
+        clutchLatencies.log(Logger.Shots, "Shooter#logStatistics");
+        fireToReadyTimes.log(Logger.Shots, "Shooter#logStatistics");
+        reloadTimes.reset();
+        clutchLatencies.reset();
+        fireToReadyTimes.reset();
+    }
+
+    /**
+     * Check if the arm has settled at the target. The arm is settled once it
+     * has stayed within ShooterPositionTolerance for kSettleHoldTime.
+     * @param target the target position
+     * @param position the current arm position
+     */
+    private void updateSettleTime(double target, double position) {
+        if (settled)
+            return;
+
+        long now = frame.getTimestamp();
+        if (Math.abs(target - position) < Constants.ShooterPositionTolerance.getValue()) {
+            if (inToleranceTime < 0) {
+                inToleranceTime = now;
+            } else if (now - inToleranceTime >= kSettleHoldTime) {
+                settled = true;
+                settleTime = (inToleranceTime - settleStartTime) / 1000.0;
+                Logger.Shots.info("Shooter#setPosition", "Settled at {} in {}ms", target, settleTime);
             }
+        } else {
+            inToleranceTime = -1;
         }
+    }
 
+    /**
+     * Automatically position the shooter based on the distance to the target
+     * @param distance the distance from the goal
+     */
+    public void autoAim(double distance) {
+        // ShooterDistanceOffset shifts the whole table
+        double target = shotTable.get(distance - Constants.ShooterDistanceOffset.getValue());
         setPosition(target);
     }
 
@@ -253,7 +488,8 @@ public class Shooter implements Subsystem {
      */
     public void setWinch(double speed) {
         manualControl = true;
-        _setWinch(speed);
+        positionControl = false;
+        sendCommand(kCommandManual, speed, 0.0);
     }
 
     /**
@@ -264,19 +500,96 @@ public class Shooter implements Subsystem {
     }
 
     /**
-     * Control the winch motors
-     * @param speed the output value for the winch motors
+     * Send a command to the winch task and wake it up to handle it
+     * @param command the command code
+     * @param value the command's value
+     * @param argument the command's second value
+     */
+    private void sendCommand(int command, double value, double argument) {
+        lastCommand = commands.post(command, value, argument);
+        scheduler.schedule(winchSlot, winchTask, 0, kWinchPeriod);
+    }
+
+    /**
+     * Run the winch and clutch. This is the only place the winch motors and
+     * clutch are set. Called periodically on the scheduler thread.
+     * @param now the current FPGA time in microseconds
      */
-    private void _setWinch(double speed) {
-        // Ensure we've waited long enough after firing
-        if (clutchTimer.hasExpired()) {
-            if (speed > 0 && atLoadingPosition() && !SamXV.manualOverride())
-                speed = 0;
+    private void updateWinch(long now) {
+        // Pick up the latest command from the robot loop
+        if (commands.poll()) {
+            switch (commands.getCommand()) {
+                case kCommandManual:
+                    winchState = kStateManual;
+                    winchSpeed = commands.getValue();
+                    fireTime = -1;
+                    break;
+                case kCommandReload:
+                    startReload(now);
+                    fireTime = -1;
+                    break;
+                case kCommandBump:
+                    winchState = kStateBumping;
+                    winchSpeed = commands.getValue();
+                    bumpEndTime = now + (long) commands.getArgument();
+                    break;
+                case kCommandFire:
+                    clutch.set(DoubleSolenoid.Value.kForward);
+                    fireTime = (long) commands.getValue();
+                    clutchLatencies.record((now - fireTime) / 1000.0);
+                    clutchReleased = true;
+                    clutchEngageTime = now + (long) commands.getArgument();
+                    winchState = kStateManual;
+                    winchSpeed = 0.0;
+                    break;
+            }
+        }
 
-            // Set the winch motors
-            winchLeft.set(speed);
-            winchRight.set(speed);
+        // Re-engage the clutch once the shot is done, then reload
+        if (clutchReleased && now >= clutchEngageTime) {
+            clutch.set(DoubleSolenoid.Value.kReverse);
+            clutchReleased = false;
+            startReload(now);
         }
+
+        double speed = winchSpeed;
+        if (winchState == kStateReloading) {
+            speed = 1.0;
+            if (loadSwitch.get()) {
+                speed = winchSpeed = 0.0;
+                winchState = kStateManual;
+                reloads.post(0, reloadCommand, 0.0);
+                reloadTimes.record((now - reloadStartTime) / 1000.0);
+                if (fireTime >= 0) {
+                    fireToReadyTimes.record((now - fireTime) / 1000.0);
+                    fireTime = -1;
+                }
+                Logger.debug("Shooter#reload", "Reload time: {}", reloadTimes.getLast());
+            }
+        } else if (winchState == kStateBumping && now >= bumpEndTime) {
+            speed = winchSpeed = 0.0;
+            winchState = kStateManual;
+        }
+
+        // Never drive the winch while the clutch is out, or past the loading
+        // position. This runs between robot loops, so read the switch directly.
+        if (clutchReleased)
+            speed = 0.0;
+        if (speed > 0 && loadSwitch.get() && !SamXV.manualOverride())
+            speed = 0.0;
+
+        winchLeft.set(speed);
+        winchRight.set(speed);
+    }
+
+    /**
+     * Start pulling the arm back to the loading position. Called from the
+     * winch task.
+     */
+    private void startReload(long now) {
+        winchState = kStateReloading;
+        reloadStartTime = now;
+        reloadCommand = commands.getSequence();
     }
 
     /**
@@ -284,7 +597,7 @@ public class Shooter implements Subsystem {
      * @return the status of the loading limit switch
      */
     public boolean atLoadingPosition() {
-        return loadSwitch.get();
+        return frame.loadSwitch;
     }
 
     /**
@@ -292,7 +605,7 @@ public class Shooter implements Subsystem {
      * @return the status of the firing limit switch
      */
     public boolean atMaxPosition() {
-        return maxSwitch.get();
+        return frame.maxSwitch;
     }
 
     /**
@@ -300,7 +613,7 @@ public class Shooter implements Subsystem {
      * @return the status if the ball switch
      */
     public boolean ballIsLoaded() {
-        return ballSwitch.get();
+        return frame.ballSwitch;
     }
 
     /**
@@ -308,14 +621,33 @@ public class Shooter implements Subsystem {
      * @return if the shooter is being controlled manually
      */
     public boolean isManualControl() {
+        // Manual control resumes once our last command has finished reloading
+        if (reloads.poll() && (int) reloads.getValue() == lastCommand)
+            manualControl = true;
         return manualControl;
     }
 
     /**
-     * Get the position of the arm
+     * Check if the arm has settled at the target given to setPosition
+     * @return true if the arm is at its position target
+     */
+    public boolean isAtPosition() {
+        return positionControl && settled;
+    }
+
+    /**
+     * Get the time the arm took to settle at its last position target
+     * @return the settle time in milliseconds
+     */
+    public double getSettleTime() {
+        return settleTime;
+    }
+
+    /**
+     * Get the position of the arm, filtered to remove noise from the pot
      * @return the value of the potentiometer
      */
     public double getArmPosition() {
-        return positionPot.getAverageVoltage();
+        return armFilter.get();
     }
 }
@@ -1,22 +1,38 @@
 package org.lunatecs316.frc2014.subsystems;
 
+import org.lunatecs316.frc2014.Constants;
+
 /**
  * Interface for all robot subsystems
  * @author Domenic Rodriguez
  */
-public interface Subsystem {
+public interface Subsystem extends Constants.Listener {
     /**
      * Initialize the subsystem
      */
     public void init();
     
+    /**
+     * Read and filter sensors into the {@link SensorFrame}. Called once at
+     * the start of every loop; getters should read from the frame rather
+     * than from the hardware.
+     */
+    public void updateSensors();
+
     /**
      * Send data to the SmartDashboard
      */
     public void updateSmartDashboard();
 
     /**
-     * Set any values read from constants
+     * Record sensor values to the telemetry log
+     */
+    public void updateTelemetry();
+
+    /**
+     * Set any values read from constants. Subsystems register the constants
+     * they use with {@link Constants#addListener}, and this is only called
+     * when one of them changes.
      */
     public void updateConstants();
 }
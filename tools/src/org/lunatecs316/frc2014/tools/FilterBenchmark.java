@@ -0,0 +1,89 @@
+package org.lunatecs316.frc2014.tools;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import org.lunatecs316.frc2014.lib.filter.Filter;
+import org.lunatecs316.frc2014.lib.filter.FilterChain;
+import org.lunatecs316.frc2014.lib.filter.LowPassFilter;
+import org.lunatecs316.frc2014.lib.filter.MedianFilter;
+import org.lunatecs316.frc2014.lib.filter.MovingAverageFilter;
+import org.lunatecs316.frc2014.lib.filter.OutlierFilter;
+
+/**
+ * Desktop benchmark for the sensor filters in lib.filter. Reports the time
+ * per update of each filter, and checks that updates don't allocate memory
+ * (on JVMs that can report per-thread allocation).
+ * <p>
+ * Usage: java org.lunatecs316.frc2014.tools.FilterBenchmark
+ * @author Domenic Rodriguez
+ */
+public class FilterBenchmark {
+    static final int kIterations = 10000000;
+    static final int kSamples = 4096;
+
+    public static void main(String[] args) {
+        // Noisy test signal with occasional spikes, like a range finder
+        double[] samples = new double[kSamples];
+        java.util.Random random = new java.util.Random(316);
+        for (int i = 0; i < kSamples; i++) {
+            samples[i] = 100.0 + 20.0 * Math.sin(i / 50.0) + random.nextGaussian();
+            if (random.nextInt(50) == 0)
+                samples[i] += 200.0;
+        }
+
+        String[] names = {
+            "median(3)", "median(5)", "movingAverage(5)", "lowPass(0.3)",
+            "outlier(24, 5)", "outlier -> median(5)"
+        };
+        Filter[] filters = {
+            new MedianFilter(3), new MedianFilter(5), new MovingAverageFilter(5),
+            new LowPassFilter(0.3), new OutlierFilter(24.0, 5),
+            new FilterChain(new Filter[] { new OutlierFilter(24.0, 5), new MedianFilter(5) })
+        };
+
+        boolean allocated = false;
+        for (int f = 0; f < filters.length; f++) {
+            Filter filter = filters[f];
+            double sink = 0.0;
+
+            // Warm up the JIT before timing
+            for (int i = 0; i < kIterations; i++)
+                sink += filter.update(samples[i % kSamples]);
+
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < kIterations; i++)
+                sink += filter.update(samples[i % kSamples]);
+            long elapsed = System.nanoTime() - start;
+            bytes = allocatedBytes() - bytes;
+
+            // Asking for the allocation count allocates a little itself, so
+            // only a count that grows with the number of updates means trouble
+            double perUpdate = (double) bytes / kIterations;
+            System.out.println(names[f] + ": " + (double) elapsed / kIterations + " ns/update, "
+                    + ((bytes < 0) ? "allocation unknown" : perUpdate + " bytes/update")
+                    + " (checksum " + sink + ")");
+            if (perUpdate >= 0.01)
+                allocated = true;
+        }
+
+        if (allocated) {
+            System.out.println("FAIL: filters allocated memory while updating");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Get the number of bytes allocated by this thread so far, or -1 if the
+     * JVM can't tell us
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported())
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,95 @@
+package org.lunatecs316.frc2014.tools;
+
+import java.util.Random;
+import org.lunatecs316.frc2014.lib.BiasEstimator;
+
+/**
+ * Desktop simulation of gyro drift over a match, with and without the
+ * stationary bias estimation done by lib.Gyro. Each simulated match starts
+ * with the usual five second calibration, then alternates between driving
+ * and sitting still for 2.5 minutes while the gyro's bias wanders. Reports
+ * the heading error at the end of the match for both cases.
+ * <p>
+ * Usage: java org.lunatecs316.frc2014.tools.GyroDriftBenchmark [matches]
+ * @author Domenic Rodriguez
+ */
+public class GyroDriftBenchmark {
+    static final double kSampleRate = 50.0;
+    static final double kCalibrationTime = 5.0;
+    static final double kMatchTime = 150.0;
+    /** Time the robot must sit still before samples are used, in seconds */
+    static final double kStationaryTime = 0.5;
+    /** Same window as Gyro.kBiasMaxSamples */
+    static final double kBiasMaxSamples = kSampleRate * 30;
+    /** Same limit as Gyro.kMaxBiasRate, in degrees per second */
+    static final double kMaxBiasRate = 1.0;
+
+    // Gyro error model, in degrees per second
+    static final double kNoise = 0.3;
+    static final double kThermalDrift = 0.05;
+    static final double kThermalTimeConstant = 60.0;
+    static final double kRandomWalk = 0.002;
+
+    public static void main(String[] args) {
+        int matches = (args.length > 0) ? Integer.parseInt(args[0]) : 500;
+        Random random = new Random(316);
+        double dt = 1.0 / kSampleRate;
+
+        double fixedTotal = 0.0, fixedMax = 0.0;
+        double estimatedTotal = 0.0, estimatedMax = 0.0;
+        for (int m = 0; m < matches; m++) {
+            double startBias = random.nextGaussian() * 0.5;
+            double thermal = random.nextGaussian() * kThermalDrift;
+            double walk = 0.0;
+
+            // Calibration at rest, like Gyro.updateCalibration
+            double sum = 0.0;
+            int count = (int) (kCalibrationTime * kSampleRate);
+            for (int i = 0; i < count; i++)
+                sum += startBias + random.nextGaussian() * kNoise;
+            double calibrated = sum / count;
+            BiasEstimator estimator = new BiasEstimator(kBiasMaxSamples);
+            estimator.reset(calibrated, count);
+
+            double truth = 0.0, fixed = 0.0, estimated = 0.0;
+            double rate = 0.0, segmentEnd = 0.0, stillTime = 0.0;
+            boolean moving = false;
+            for (double t = 0.0; t < kMatchTime; t += dt) {
+                // Alternate between driving around and sitting still
+                if (t >= segmentEnd) {
+                    moving = !moving;
+                    segmentEnd = t + (moving ? 2.0 + 6.0 * random.nextDouble() : 1.0 + 4.0 * random.nextDouble());
+                    rate = moving ? random.nextGaussian() * 90.0 : 0.0;
+                    stillTime = 0.0;
+                }
+                if (!moving)
+                    stillTime += dt;
+
+                walk += random.nextGaussian() * kRandomWalk * Math.sqrt(dt);
+                double bias = startBias + thermal * (1.0 - Math.exp(-t / kThermalTimeConstant)) + walk;
+                double sample = rate + bias + random.nextGaussian() * kNoise;
+
+                truth += rate * dt;
+                fixed += (sample - calibrated) * dt;
+                estimated += (sample - estimator.getBias()) * dt;
+                if (stillTime >= kStationaryTime && Math.abs(sample - estimator.getBias()) <= kMaxBiasRate)
+                    estimator.update(sample, 1);
+            }
+
+            double fixedError = Math.abs(fixed - truth);
+            double estimatedError = Math.abs(estimated - truth);
+            fixedTotal += fixedError;
+            fixedMax = Math.max(fixedMax, fixedError);
+            estimatedTotal += estimatedError;
+            estimatedMax = Math.max(estimatedMax, estimatedError);
+        }
+
+        System.out.println("Heading error after " + kMatchTime + "s, " + matches + " matches:");
+        System.out.println("  calibration only:  mean " + round(fixedTotal / matches) + " deg, max " + round(fixedMax) + " deg");
+        System.out.println("  stationary bias:   mean " + round(estimatedTotal / matches) + " deg, max " + round(estimatedMax) + " deg");
+    }
+
+    static double round(double value) {
+        return Math.floor(value * 100.0 + 0.5) / 100.0;
+    }
+}
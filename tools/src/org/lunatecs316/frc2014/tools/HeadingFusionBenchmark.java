@@ -0,0 +1,237 @@
+package org.lunatecs316.frc2014.tools;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.lunatecs316.frc2014.lib.BiasEstimator;
+import org.lunatecs316.frc2014.lib.HeadingFilter;
+
+/**
+ * Desktop benchmark for the gyro/encoder heading filter in lib. Compares the
+ * heading error of several gyro weights, from encoders only (0) to gyro
+ * only (1), and times the filter update.
+ * <p>
+ * With no arguments, simulated matches are used: the gyro has a scale error
+ * and a drifting bias (corrected while the robot sits still, as lib.Gyro
+ * does, so weight 1 is what the robot gets from the gyro alone), the
+ * wheels aren't quite the same size and slip a
+ * little, the encoders only count whole ticks, and they overestimate turns
+ * because the wheels scrub. Given a CSV from {@link TelemetryDecoder}, the recorded
+ * gyro and encoder channels are replayed instead. Recorded data has no true
+ * heading, so drive the robot around and bring it back to a known heading
+ * (0 by default) before the end of the recording; the error at the end is
+ * reported.
+ * <p>
+ * Usage: java org.lunatecs316.frc2014.tools.HeadingFusionBenchmark
+ *            [match.csv [countsPerInch trackWidth finalHeading]]
+ * @author Domenic Rodriguez
+ */
+public class HeadingFusionBenchmark {
+    static final double[] kWeights = {0.0, 0.9, 0.95, 0.98, 0.99, 0.995, 0.999, 1.0};
+    static final double kLoopRate = 50.0;
+    static final double kMatchTime = 150.0;
+    static final int kMatches = 200;
+    static final int kTimingIterations = 20000000;
+
+    // Same defaults as Constants
+    static final double kCountsPerInch = 28000 / 96.0;
+    static final double kTrackWidth = 24.0;
+    static final double kMaxTurnRate = 10.0;
+    static final double kMaxSpeed = 2.0;
+
+    // Same as lib.Gyro and the drivetrain's stationary check
+    static final double kCalibrationSamples = kLoopRate * 5.0;
+    static final double kBiasMaxSamples = kLoopRate * 30;
+    static final double kMaxBiasRate = 1.0;
+    static final double kStationaryTime = 0.5;
+
+    // Simulated sensor errors
+    static final double kGyroNoise = 0.3;
+    static final double kGyroScaleError = 0.01;
+    static final double kGyroBias = 0.02;
+    static final double kGyroDrift = 0.05;
+    static final double kWheelScrub = 0.1;
+    static final double kWheelNoise = 0.02;
+    static final double kWheelMismatch = 0.003;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0)
+            replay(args);
+        else
+            simulate();
+        time();
+    }
+
+    /**
+     * Run simulated matches and report the error for each weight
+     */
+    static void simulate() {
+        Random random = new Random(316);
+        double dt = 1.0 / kLoopRate;
+        double[] rmsTotal = new double[kWeights.length];
+        double[] finalTotal = new double[kWeights.length];
+        double rawRmsTotal = 0.0, rawFinalTotal = 0.0;
+        HeadingFilter[] filters = new HeadingFilter[kWeights.length];
+        for (int w = 0; w < kWeights.length; w++)
+            filters[w] = new HeadingFilter(kTrackWidth, kWeights[w], kMaxTurnRate, kMaxSpeed);
+
+        for (int m = 0; m < kMatches; m++) {
+            double gyroScale = 1.0 + random.nextGaussian() * kGyroScaleError;
+            double bias = random.nextGaussian() * kGyroBias;
+            double drift = random.nextGaussian() * kGyroDrift / kMatchTime;
+            double scrub = 1.0 + kWheelScrub * (0.5 + random.nextDouble());
+            double mismatch = random.nextGaussian() * kWheelMismatch;
+            for (int w = 0; w < kWeights.length; w++)
+                filters[w].reset(0.0);
+
+            // The gyro keeps refining its bias while the robot sits still, like lib.Gyro
+            BiasEstimator estimator = new BiasEstimator(kBiasMaxSamples);
+            estimator.reset(0.0, kCalibrationSamples);
+            double rawHeading = 0.0, rawSquared = 0.0, stillTime = 0.0;
+
+            double truth = 0.0, speed = 0.0, rate = 0.0, segmentEnd = 0.0;
+            double leftPosition = 0.0, rightPosition = 0.0, lastLeftCounts = 0.0, lastRightCounts = 0.0;
+            double[] squared = new double[kWeights.length];
+            int samples = 0;
+            for (double t = 0.0; t < kMatchTime; t += dt) {
+                // Drive around: straight runs, turns, and stops
+                if (t >= segmentEnd) {
+                    segmentEnd = t + 1.0 + 4.0 * random.nextDouble();
+                    int kind = random.nextInt(3);
+                    speed = (kind == 2) ? 0.0 : 60.0 * random.nextGaussian();
+                    rate = (kind == 1) ? 90.0 * random.nextGaussian() : 0.0;
+                }
+
+                double turn = rate * dt;
+                truth += turn;
+                double gyroRate = rate * gyroScale + bias + drift * t + random.nextGaussian() * kGyroNoise;
+                double gyroChange = (gyroRate - estimator.getBias()) * dt;
+                rawHeading += gyroRate * dt;
+                rawSquared += (rawHeading - truth) * (rawHeading - truth);
+
+                stillTime = (speed == 0.0 && rate == 0.0) ? stillTime + dt : 0.0;
+                if (stillTime >= kStationaryTime && Math.abs(gyroRate - estimator.getBias()) <= kMaxBiasRate)
+                    estimator.update(gyroRate, 1);
+
+                // Wheels scrub while turning, so the difference reads too large
+                double difference = Math.toRadians(turn) * kTrackWidth * scrub;
+                double leftMove = (speed * dt + difference / 2.0) * (1.0 + mismatch / 2.0);
+                double rightMove = (speed * dt - difference / 2.0) * (1.0 - mismatch / 2.0);
+                leftPosition += leftMove + random.nextGaussian() * kWheelNoise * Math.abs(leftMove);
+                rightPosition += rightMove + random.nextGaussian() * kWheelNoise * Math.abs(rightMove);
+
+                // The encoders only count whole ticks
+                double leftCounts = Math.floor(leftPosition * kCountsPerInch);
+                double rightCounts = Math.floor(rightPosition * kCountsPerInch);
+                double left = (leftCounts - lastLeftCounts) / kCountsPerInch;
+                double right = (rightCounts - lastRightCounts) / kCountsPerInch;
+                lastLeftCounts = leftCounts;
+                lastRightCounts = rightCounts;
+
+                for (int w = 0; w < kWeights.length; w++) {
+                    double error = filters[w].update(gyroChange, left, right, dt) - truth;
+                    squared[w] += error * error;
+                }
+                samples++;
+            }
+
+            for (int w = 0; w < kWeights.length; w++) {
+                rmsTotal[w] += Math.sqrt(squared[w] / samples);
+                finalTotal[w] += Math.abs(filters[w].getHeading() - truth);
+            }
+            rawRmsTotal += Math.sqrt(rawSquared / samples);
+            rawFinalTotal += Math.abs(rawHeading - truth);
+        }
+
+        System.out.println("Simulated heading error over " + kMatches + " matches of " + kMatchTime + "s:");
+        for (int w = 0; w < kWeights.length; w++) {
+            System.out.println("  gyro weight " + kWeights[w] + ": rms " + round(rmsTotal[w] / kMatches)
+                    + " deg, final " + round(finalTotal[w] / kMatches) + " deg");
+        }
+        System.out.println("  (gyro without bias estimation: rms " + round(rawRmsTotal / kMatches)
+                + " deg, final " + round(rawFinalTotal / kMatches) + " deg)");
+    }
+
+    /**
+     * Replay recorded telemetry and report the heading at the end for each
+     * weight
+     */
+    static void replay(String[] args) throws IOException {
+        double countsPerInch = (args.length > 1) ? Double.parseDouble(args[1]) : kCountsPerInch;
+        double trackWidth = (args.length > 2) ? Double.parseDouble(args[2]) : kTrackWidth;
+        double finalHeading = (args.length > 3) ? Double.parseDouble(args[3]) : 0.0;
+
+        List<double[]> rows = new ArrayList<double[]>();
+        BufferedReader in = new BufferedReader(new FileReader(args[0]));
+        String[] header = in.readLine().split(",", -1);
+        int leftColumn = column(header, "Drivetrain.leftEncoder");
+        int rightColumn = column(header, "Drivetrain.rightEncoder");
+        int gyroColumn = column(header, "Drivetrain.gyro");
+        int timeColumn = column(header, "time_us");
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] fields = line.split(",", -1);
+            if (fields[leftColumn].length() == 0 || fields[rightColumn].length() == 0
+                    || fields[gyroColumn].length() == 0)
+                continue;
+            rows.add(new double[] {
+                Double.parseDouble(fields[leftColumn]),
+                Double.parseDouble(fields[rightColumn]),
+                Double.parseDouble(fields[gyroColumn]),
+                Double.parseDouble(fields[timeColumn]) * 1e-6
+            });
+        }
+        in.close();
+        if (rows.size() < 2) {
+            System.err.println("Not enough drivetrain data in " + args[0]);
+            System.exit(1);
+        }
+
+        System.out.println("Replayed " + rows.size() + " loops from " + args[0]
+                + ", expected final heading " + finalHeading + " deg:");
+        for (int w = 0; w < kWeights.length; w++) {
+            HeadingFilter filter = new HeadingFilter(trackWidth, kWeights[w], kMaxTurnRate, kMaxSpeed);
+            double[] first = rows.get(0);
+            filter.reset(first[2]);
+            double[] last = first;
+            for (int i = 1; i < rows.size(); i++) {
+                double[] row = rows.get(i);
+                filter.update(row[2] - last[2], (row[0] - last[0]) / countsPerInch,
+                        (row[1] - last[1]) / countsPerInch, row[3] - last[3]);
+                last = row;
+            }
+            System.out.println("  gyro weight " + kWeights[w] + ": final " + round(filter.getHeading())
+                    + " deg, error " + round(Math.abs(filter.getHeading() - finalHeading)) + " deg");
+        }
+    }
+
+    /**
+     * Time the filter update
+     */
+    static void time() {
+        HeadingFilter filter = new HeadingFilter(kTrackWidth, 0.99, kMaxTurnRate, kMaxSpeed);
+        double sink = 0.0;
+        for (int i = 0; i < kTimingIterations; i++)
+            sink += filter.update(0.01 * (i & 7), 0.1, 0.099, 0.02);
+        long start = System.nanoTime();
+        for (int i = 0; i < kTimingIterations; i++)
+            sink += filter.update(0.01 * (i & 7), 0.1, 0.099, 0.02);
+        long elapsed = System.nanoTime() - start;
+        System.out.println("Update: " + round((double) elapsed / kTimingIterations) + " ns (" + (sink != 0.0) + ")");
+    }
+
+    static int column(String[] header, String name) {
+        for (int i = 0; i < header.length; i++) {
+            if (header[i].equals(name))
+                return i;
+        }
+        throw new IllegalArgumentException("No " + name + " column");
+    }
+
+    static double round(double value) {
+        return Math.floor(value * 100.0 + 0.5) / 100.0;
+    }
+}
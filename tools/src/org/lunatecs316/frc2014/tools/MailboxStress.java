@@ -0,0 +1,66 @@
+package org.lunatecs316.frc2014.tools;
+
+import org.lunatecs316.frc2014.lib.Mailbox;
+
+/**
+ * Desktop stress check for the lock-free {@link Mailbox} used between the
+ * robot loop and the winch task. A writer thread posts messages as fast as
+ * it can while a reader polls; every message the reader sees must be
+ * complete (its values all match its command) and newer than the last one.
+ * <p>
+ * Usage: java org.lunatecs316.frc2014.tools.MailboxStress [seconds]
+ * <p>
+ * Exits with status 1 if a torn or out-of-order message is ever seen.
+ * @author Domenic Rodriguez
+ */
+public class MailboxStress {
+    private static final Mailbox mailbox = new Mailbox();
+    private static volatile boolean running = true;
+
+    public static void main(String[] args) throws InterruptedException {
+        long seconds = (args.length > 0) ? Long.parseLong(args[0]) : 5;
+
+        Thread writer = new Thread() {
+            public void run() {
+                int i = 0;
+                while (running) {
+                    i++;
+                    mailbox.post(i, i * 2.0, -i);
+                }
+            }
+        };
+        writer.start();
+
+        long end = System.currentTimeMillis() + seconds * 1000;
+        long reads = 0;
+        long misses = 0;
+        int errors = 0;
+        int last = 0;
+        while (System.currentTimeMillis() < end) {
+            if (!mailbox.poll()) {
+                misses++;
+                continue;
+            }
+            reads++;
+            int command = mailbox.getCommand();
+            if (mailbox.getValue() != command * 2.0 || mailbox.getArgument() != -command) {
+                errors++;
+                System.out.println("Torn message: " + command + " " + mailbox.getValue() + " " + mailbox.getArgument());
+            }
+            if (command <= last) {
+                errors++;
+                System.out.println("Out of order: " + command + " after " + last);
+            }
+            last = command;
+        }
+        running = false;
+        writer.join();
+
+        System.out.println(reads + " messages read, " + misses + " empty or busy polls, last command " + last);
+        if (errors > 0) {
+            System.out.println("FAIL: " + errors + " errors");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+}
@@ -0,0 +1,158 @@
+package org.lunatecs316.frc2014.tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Desktop utility to convert a binary telemetry file (match*.tlm) into CSV.
+ * Each row of the output holds one iteration of the robot loop, with one
+ * column per channel.
+ * <p>
+ * Usage: java org.lunatecs316.frc2014.tools.TelemetryDecoder match.tlm [out.csv]
+ * @author Domenic Rodriguez
+ */
+public class TelemetryDecoder {
+    // Must match org.lunatecs316.frc2014.lib.Telemetry
+    static final int kMagic = 0x4C544C4D;
+    static final int kVersion = 1;
+    static final byte kTypeDouble = 0;
+    static final byte kTypeInt = 1;
+    static final byte kTypeBoolean = 2;
+
+    private String[] names;
+    private byte[] types;
+    private String[] row;
+    private int recordSize;
+
+    /**
+     * Read the schema header at the start of the file
+     * @param in the telemetry file
+     * @throws IOException if the header is missing or invalid
+     */
+    void readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != kMagic)
+            throw new IOException("Not a telemetry file");
+        int version = in.readShort();
+        if (version != kVersion)
+            throw new IOException("Unsupported telemetry version " + version);
+        recordSize = in.readShort();
+
+        int count = in.readShort();
+        names = new String[count];
+        types = new byte[count];
+        row = new String[count];
+        for (int i = 0; i < count; i++) {
+            int id = in.readShort();
+            types[id] = in.readByte();
+            names[id] = in.readUTF();
+        }
+    }
+
+    /**
+     * Convert the records of a telemetry file to CSV
+     * @param in the telemetry file, positioned after the header
+     * @param out the CSV output
+     * @return the number of records converted
+     * @throws IOException if the file could not be read
+     */
+    int convert(DataInputStream in, PrintWriter out) throws IOException {
+        // Column headings
+        out.print("loop,time_us");
+        for (int i = 0; i < names.length; i++)
+            out.print("," + names[i]);
+        out.println();
+
+        int records = 0;
+        int currentLoop = 0;
+        long loopTime = 0;
+        boolean haveRow = false;
+        while (true) {
+            int loop;
+            try {
+                loop = in.readInt();
+            } catch (EOFException e) {
+                break;
+            }
+            long time = in.readLong();
+            int channel = in.readShort();
+            byte type = in.readByte();
+            in.readByte();
+            long payload = in.readLong();
+            in.skipBytes(recordSize - 24);
+
+            if (!haveRow || loop != currentLoop) {
+                if (haveRow)
+                    printRow(out, currentLoop, loopTime);
+                currentLoop = loop;
+                loopTime = time;
+                haveRow = true;
+            }
+            if (channel >= 0 && channel < row.length)
+                row[channel] = format(type, payload);
+            records++;
+        }
+        if (haveRow)
+            printRow(out, currentLoop, loopTime);
+        return records;
+    }
+
+    private void printRow(PrintWriter out, int loop, long time) {
+        out.print(loop);
+        out.print(',');
+        out.print(time);
+        for (int i = 0; i < row.length; i++) {
+            out.print(',');
+            if (row[i] != null)
+                out.print(row[i]);
+            row[i] = null;
+        }
+        out.println();
+    }
+
+    private static String format(byte type, long payload) {
+        switch (type) {
+            case kTypeDouble:
+                return Double.toString(Double.longBitsToDouble(payload));
+            case kTypeInt:
+                return Integer.toString((int) payload);
+            case kTypeBoolean:
+                return (payload != 0) ? "1" : "0";
+            default:
+                return "";
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: TelemetryDecoder <match.tlm> [output.csv]");
+            System.exit(1);
+        }
+        String input = args[0];
+        String output;
+        if (args.length > 1)
+            output = args[1];
+        else if (input.endsWith(".tlm"))
+            output = input.substring(0, input.length() - 4) + ".csv";
+        else
+            output = input + ".csv";
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(input)));
+        PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(output)));
+        try {
+            TelemetryDecoder decoder = new TelemetryDecoder();
+            decoder.readHeader(in);
+            int records = decoder.convert(in, out);
+            System.out.println("Converted " + records + " records from " + decoder.names.length
+                    + " channels to " + output);
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+}
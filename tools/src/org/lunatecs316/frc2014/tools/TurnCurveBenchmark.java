@@ -0,0 +1,74 @@
+package org.lunatecs316.frc2014.tools;
+
+import org.lunatecs316.frc2014.lib.TurnCurve;
+
+/**
+ * Desktop check of the cheesy drive steering lookup table. Compares the
+ * table against the exact triple-sine calculation over a range of
+ * non-linearity values, reports the worst error, and times both versions.
+ * <p>
+ * Usage: java org.lunatecs316.frc2014.tools.TurnCurveBenchmark [maxError]
+ * <p>
+ * Exits with status 1 if the error is ever larger than maxError (default
+ * 0.001), so this can be run before changing the table size.
+ * @author Domenic Rodriguez
+ */
+public class TurnCurveBenchmark {
+    static final int kSamples = 100001;
+    static final int kIterations = 5000000;
+
+    public static void main(String[] args) {
+        double limit = (args.length > 0) ? Double.parseDouble(args[0]) : 0.001;
+
+        double worst = 0.0;
+        for (int k = 1; k <= 10; k++) {
+            double nonLinearity = k / 10.0;
+            TurnCurve curve = new TurnCurve(nonLinearity);
+            double maxError = 0.0;
+            double worstInput = 0.0;
+            for (int i = 0; i < kSamples; i++) {
+                double turn = -1.0 + 2.0 * i / (kSamples - 1);
+                double error = Math.abs(curve.apply(turn) - TurnCurve.calculate(turn, nonLinearity));
+                if (error > maxError) {
+                    maxError = error;
+                    worstInput = turn;
+                }
+            }
+            System.out.println("nonLinearity " + nonLinearity + ": max error " + maxError + " at " + worstInput);
+            worst = Math.max(worst, maxError);
+        }
+
+        TurnCurve curve = new TurnCurve(0.5);
+        double sink = 0.0;
+
+        // Warm up the JIT before timing
+        for (int i = 0; i < kIterations; i++) {
+            sink += curve.apply(input(i));
+            sink += TurnCurve.calculate(input(i), 0.5);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < kIterations; i++)
+            sink += TurnCurve.calculate(input(i), 0.5);
+        long exact = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < kIterations; i++)
+            sink += curve.apply(input(i));
+        long table = System.nanoTime() - start;
+
+        System.out.println("exact: " + (double) exact / kIterations + " ns/call");
+        System.out.println("table: " + (double) table / kIterations + " ns/call");
+        System.out.println("(checksum " + sink + ")");
+
+        if (worst > limit) {
+            System.out.println("FAIL: max error " + worst + " is over " + limit);
+            System.exit(1);
+        }
+        System.out.println("OK: max error " + worst);
+    }
+
+    private static double input(int i) {
+        return ((i % 2001) - 1000) / 1000.0;
+    }
+}